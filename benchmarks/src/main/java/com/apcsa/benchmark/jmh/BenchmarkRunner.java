@@ -0,0 +1,33 @@
+package com.apcsa.benchmark.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the JMH benchmarks with the gc profiler attached, so every result reports
+ * throughput, average latency, and allocation rate (gc.alloc.rate.norm is bytes per
+ * operation). Accepts the standard JMH command line; for example, to benchmark grade
+ * entry against 5,000 students:
+ *
+ *     mvn -B package
+ *     java -jar benchmarks/target/benchmarks.jar enterGrade -p students=5000
+ *
+ * Run from the project root (the seeded databases are built from config/).
+ */
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        if (options.shouldHelp()) {
+            options.showHelp();
+        } else if (options.shouldList()) {
+            new Runner(options).list();
+        } else {
+            new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.apcsa.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.model.StudentSummary;
+import com.apcsa.model.TranscriptEntry;
+import com.apcsa.model.User;
+
+/*
+ * The data access behind the hot screens, against a seeded in-memory database (see
+ * SeededDatabase for the size parameters).
+ */
+
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataBenchmarks {
+
+    private static final int LOGIN_USERS = 16;
+
+    /*
+     * PowerSchool.login for a handful of seeded students. Their seeded MD5 hashes are
+     * upgraded on the first login during warm-up, so this measures the configured
+     * password hash (-Dpowerschool.passwordHash) plus the user lookup.
+     */
+
+    @Benchmark
+    public User login(SeededDatabase db) {
+        String username = db.usernames[ThreadLocalRandom.current().nextInt(Math.min(LOGIN_USERS, db.usernames.length))];
+
+        return PowerSchool.login(username, username);
+    }
+
+    /*
+     * The enterGrade recompute chain: a changed assignment grade updates the running
+     * totals, the marking period grade, the course grade, the GPA, and the class
+     * ranks, committed through the writer thread.
+     */
+
+    @Benchmark
+    public int enterGrade(SeededDatabase db) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] grade = db.grades.get(random.nextInt(db.grades.size()));
+
+        return PowerSchool.updateAssignmentGrade(grade[0], grade[1], grade[2], random.nextInt(grade[3] + 1));
+    }
+
+    /*
+     * The lookups behind Application.courseGrades().
+     */
+
+    @Benchmark
+    public ArrayList<TranscriptEntry> courseGrades(SeededDatabase db) {
+        return PowerSchool.getTranscript(db.studentIds[ThreadLocalRandom.current().nextInt(db.studentIds.length)]);
+    }
+
+    /*
+     * The lookups behind Application.studentEnrollmentbyGrade().
+     */
+
+    @Benchmark
+    public ArrayList<StudentSummary> studentEnrollmentbyGrade(SeededDatabase db) {
+        return PowerSchool.getStudentsByGrade(9 + ThreadLocalRandom.current().nextInt(4));
+    }
+}
@@ -0,0 +1,272 @@
+package com.apcsa.benchmark.jmh;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import com.apcsa.controller.Utils;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.data.SchemaMigrator;
+import com.apcsa.data.ScriptRunner;
+import com.apcsa.security.LegacyMd5Hasher;
+
+/*
+ * A PowerSchool database seeded with synthetic students on top of the sample data in
+ * config/setup.sql. Each seeded student is enrolled in several courses with grades
+ * for every marking period and exam, and graded on every assignment in those courses.
+ * The seed is built in a scratch file, migrated (so the running totals are derived
+ * from the seeded grades), and then loaded into an in-memory database, so benchmark
+ * writes never touch disk or leave state behind.
+ *
+ * Seeded students log in with their username as their password (seed1/seed1, ...).
+ * Benchmarks must run from the project root, where config/ lives.
+ */
+
+@State(Scope.Benchmark)
+public class SeededDatabase {
+
+    private static final long SEED = 42;
+    private static final int SAMPLES = 4096;
+
+    @Param({ "500" })
+    public int students;
+
+    @Param({ "6" })
+    public int coursesPerStudent;
+
+    @Param({ "4" })
+    public int assignmentsPerMarkingPeriod;
+
+    int[] studentIds;
+    String[] usernames;
+    ArrayList<int[]> grades;     // course_id, assignment_id, student_id, points_possible
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path seed = Files.createTempFile("powerschool-seed", ".db");
+
+        try {
+            seed(seed);
+
+            System.setProperty("powerschool.inMemory", "true");
+            System.setProperty("powerschool.inMemory.preload", seed.toString());
+            PowerSchool.initialize(false);
+        } finally {
+            Files.deleteIfExists(seed);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PowerSchool.shutdown();
+    }
+
+    /*
+     * Builds the seed database in a file.
+     */
+
+    private void seed(Path file) throws Exception {
+        Path setup = Paths.get("config/setup.sql");
+
+        if (!Files.exists(setup)) {
+            throw new IllegalStateException("Run the benchmarks from the project root (config/setup.sql not found).");
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             BufferedReader br = Files.newBufferedReader(setup, StandardCharsets.UTF_8)) {
+
+            conn.setAutoCommit(false);
+            new ScriptRunner(conn).execute(br);
+
+            Random random = new Random(SEED);
+            ArrayList<int[]> assignments = assignments(conn, random);     // course_id, assignment_id, marking_period, point_value
+
+            insertStudents(conn, random);
+            enroll(conn, random, assignments);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE courses SET enrollment = "
+                    + "(SELECT COUNT(*) FROM course_grades cg WHERE cg.course_id = courses.course_id)");
+            }
+            conn.commit();
+
+            new SchemaMigrator().migrate(conn);
+        }
+    }
+
+    /*
+     * Adds assignments to every course: several per marking period, plus a midterm
+     * and a final exam.
+     */
+
+    private ArrayList<int[]> assignments(Connection conn, Random random) throws SQLException {
+        ArrayList<int[]> assignments = new ArrayList<int[]>();
+        ArrayList<Integer> courseIds = new ArrayList<Integer>();
+        int assignmentId;
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT course_id FROM courses ORDER BY course_id")) {
+                while (rs.next()) {
+                    courseIds.add(rs.getInt(1));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(assignment_id), 0) + 1 FROM assignments")) {
+                assignmentId = rs.getInt(1);
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO assignments "
+                + "(course_id, assignment_id, marking_period, is_midterm, is_final, title, point_value) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+
+            for (int courseId : courseIds) {
+                for (int markingPeriod = 1; markingPeriod <= 6; markingPeriod++) {
+                    int count = markingPeriod <= 4 ? assignmentsPerMarkingPeriod : 1;
+
+                    for (int i = 0; i < count; i++) {
+                        int pointValue = 10 * (1 + random.nextInt(10));
+
+                        stmt.setInt(1, courseId);
+                        stmt.setInt(2, assignmentId);
+                        stmt.setInt(3, markingPeriod);
+                        stmt.setInt(4, markingPeriod == 5 ? 1 : 0);
+                        stmt.setInt(5, markingPeriod == 6 ? 1 : 0);
+                        stmt.setString(6, "Seeded " + assignmentId);
+                        stmt.setInt(7, pointValue);
+                        stmt.addBatch();
+
+                        assignments.add(new int[] { courseId, assignmentId++, markingPeriod, pointValue });
+                    }
+                }
+            }
+            stmt.executeBatch();
+        }
+
+        return assignments;
+    }
+
+    /*
+     * Adds the seeded students and their user accounts, spread across grades 9-12. The
+     * sample data enrolls student IDs that have no student row, so seeded IDs start
+     * above every ID in use.
+     */
+
+    private void insertStudents(Connection conn, Random random) throws SQLException {
+        LegacyMd5Hasher hasher = new LegacyMd5Hasher();
+        int studentId;
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(IFNULL((SELECT MAX(student_id) FROM students), 0), "
+                 + "IFNULL((SELECT MAX(student_id) FROM course_grades), 0), "
+                 + "IFNULL((SELECT MAX(student_id) FROM assignment_grades), 0)) + 1")) {
+
+            studentId = rs.getInt(1);
+        }
+
+        studentIds = new int[students];
+        usernames = new String[students];
+
+        try (PreparedStatement user = conn.prepareStatement("INSERT INTO users "
+                 + "(account_type, username, auth, last_login) VALUES ('student', ?, ?, '0000-00-00 00:00:00.000')");
+             PreparedStatement student = conn.prepareStatement("INSERT INTO students "
+                 + "(student_id, first_name, last_name, graduation, grade_level, gpa, class_rank, user_id) "
+                 + "SELECT ?, ?, ?, ?, ?, ?, 0, user_id FROM users WHERE username = ?")) {
+
+            for (int i = 0; i < students; i++) {
+                String username = "seed" + (i + 1);
+                int gradeLevel = 9 + i % 4;
+
+                user.setString(1, username);
+                user.setString(2, hasher.hash(username));
+                user.executeUpdate();
+
+                student.setInt(1, studentId);
+                student.setString(2, "Seeded");
+                student.setString(3, "Student " + (i + 1));
+                student.setInt(4, 2019 + 12 - gradeLevel);
+                student.setInt(5, gradeLevel);
+                student.setDouble(6, Utils.round(2.0 + random.nextDouble() * 2.0, 2));
+                student.setString(7, username);
+                student.executeUpdate();
+
+                studentIds[i] = studentId++;
+                usernames[i] = username;
+            }
+        }
+    }
+
+    /*
+     * Enrolls each seeded student in random courses, with marking period, exam, and
+     * course grades, and a grade on every assignment in each course.
+     */
+
+    private void enroll(Connection conn, Random random, ArrayList<int[]> assignments) throws SQLException {
+        ArrayList<Integer> courseIds = new ArrayList<Integer>();
+        for (int[] assignment : assignments) {
+            if (!courseIds.contains(assignment[0])) {
+                courseIds.add(assignment[0]);
+            }
+        }
+
+        ArrayList<int[]> all = new ArrayList<int[]>();
+
+        try (PreparedStatement enroll = conn.prepareStatement("INSERT INTO course_grades "
+                 + "(course_id, student_id, mp1, mp2, midterm_exam, mp3, mp4, final_exam, grade) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement grade = conn.prepareStatement("INSERT INTO assignment_grades "
+                 + "(course_id, assignment_id, student_id, points_earned, points_possible, is_graded) VALUES (?, ?, ?, ?, ?, 1)")) {
+
+            for (int studentId : studentIds) {
+                Collections.shuffle(courseIds, random);
+
+                for (int courseId : courseIds.subList(0, Math.min(coursesPerStudent, courseIds.size()))) {
+                    Double[] marks = new Double[6];
+                    for (int i = 0; i < marks.length; i++) {
+                        marks[i] = Utils.round(60 + random.nextDouble() * 40, 2);
+                    }
+
+                    enroll.setInt(1, courseId);
+                    enroll.setInt(2, studentId);
+                    for (int i = 0; i < marks.length; i++) {
+                        enroll.setDouble(3 + i, marks[i]);
+                    }
+                    enroll.setDouble(9, Utils.getGrade(new ArrayList<Double>(Arrays.asList(marks))));
+                    enroll.addBatch();
+
+                    for (int[] assignment : assignments) {
+                        if (assignment[0] == courseId) {
+                            grade.setInt(1, courseId);
+                            grade.setInt(2, assignment[1]);
+                            grade.setInt(3, studentId);
+                            grade.setInt(4, random.nextInt(assignment[3] + 1));
+                            grade.setInt(5, assignment[3]);
+                            grade.addBatch();
+
+                            all.add(new int[] { courseId, assignment[1], studentId, assignment[3] });
+                        }
+                    }
+                }
+                enroll.executeBatch();
+                grade.executeBatch();
+            }
+        }
+
+        Collections.shuffle(all, random);
+        grades = new ArrayList<int[]>(all.subList(0, Math.min(SAMPLES, all.size())));
+    }
+}
@@ -0,0 +1,78 @@
+package com.apcsa.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.apcsa.controller.Utils;
+import com.apcsa.security.LegacyMd5Hasher;
+import com.apcsa.security.Passwords;
+
+/*
+ * The grade and password helpers on the hot paths. They need no database.
+ */
+
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilsBenchmarks {
+
+    private ArrayList<Double> grades;
+    private double value;
+    private LegacyMd5Hasher md5;
+    private String password;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        grades = new ArrayList<Double>(Arrays.asList(91.25, 87.5, 84.0, null, 79.75, null));
+        value = 88.456789;
+        md5 = new LegacyMd5Hasher();
+        password = "correct horse battery staple";
+        stored = Passwords.hash(password);
+    }
+
+    /*
+     * Utils.getGrade over two marking periods, a midterm, and one more marking period.
+     */
+
+    @Benchmark
+    public Double getGrade() {
+        return Utils.getGrade(grades);
+    }
+
+    @Benchmark
+    public Double round() {
+        return Utils.round(value, 2);
+    }
+
+    /*
+     * The MD5 hash Utils.getHash computed (now LegacyMd5Hasher).
+     */
+
+    @Benchmark
+    public String getHash() {
+        return md5.hash(password);
+    }
+
+    /*
+     * Verifying a password against the configured hash (-Dpowerschool.passwordHash).
+     */
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return Passwords.verify(password, stored);
+    }
+}
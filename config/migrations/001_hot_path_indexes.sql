@@ -0,0 +1,19 @@
+-- Secondary indexes for the hot lookup paths, so that these queries seek instead of
+-- scanning their tables. Where it is cheap, the selected columns are included so the
+-- lookup is answered from the index alone.
+
+-- A student's enrollments and course grades: GET_ALL_GRADES_FOR_STUDENT, GET_TRANSCRIPT,
+-- GET_GRADE_LEVEL_TRANSCRIPTS, and the course filter of EXPORT_STUDENTS
+CREATE INDEX IF NOT EXISTS idx_course_grades_student ON course_grades (student_id, course_id, grade);
+
+-- Assignments by title: GET_POINT_VALUE, GET_ASSIGNMENT_BY_TITLE
+CREATE INDEX IF NOT EXISTS idx_assignments_title ON assignments (title, point_value);
+
+-- Students in a grade level: GET_STUDENTS_BY_GRADE, GET_GRADE_LEVEL_TRANSCRIPTS
+CREATE INDEX IF NOT EXISTS idx_students_grade_level ON students (grade_level, gpa);
+
+-- Courses in a department: the department filters of the EXPORT_* queries (the course
+-- lists themselves are served from the reference catalog)
+CREATE INDEX IF NOT EXISTS idx_courses_department ON courses (department_id, course_no);
+
+ANALYZE;
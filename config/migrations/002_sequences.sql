@@ -0,0 +1,11 @@
+-- Id sequences. Each row holds the next unallocated id for a table, so handing out
+-- an id (or a block of ids) is a single-row update instead of a scan of the table.
+
+DROP TABLE IF EXISTS sequences;
+CREATE TABLE sequences (
+    name TEXT PRIMARY KEY,
+    next_value INTEGER NOT NULL
+);
+
+INSERT INTO sequences (name, next_value)
+    SELECT 'assignments', IFNULL(MAX(assignment_id), 0) + 1 FROM assignments;
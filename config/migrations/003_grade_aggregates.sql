@@ -0,0 +1,26 @@
+-- Running totals of each student's graded assignments per course and marking period,
+-- kept up to date by every assignment_grades write. Marking period grades are read
+-- from here (percent_sum / graded) instead of re-reading every assignment grade.
+
+DROP TABLE IF EXISTS grade_aggregates;
+CREATE TABLE grade_aggregates (
+    course_id INTEGER NOT NULL,
+    student_id INTEGER NOT NULL,
+    marking_period INTEGER NOT NULL,
+    points_earned REAL NOT NULL DEFAULT 0,
+    points_possible REAL NOT NULL DEFAULT 0,
+    percent_sum REAL NOT NULL DEFAULT 0,
+    graded INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (course_id, student_id, marking_period)
+);
+
+-- the join leaves out grades whose assignment was deleted before this migration;
+-- those rows are kept, but no longer count toward any grade
+
+INSERT INTO grade_aggregates (course_id, student_id, marking_period, points_earned, points_possible, percent_sum, graded)
+    SELECT ag.course_id, ag.student_id, a.marking_period,
+            SUM(ag.points_earned), SUM(ag.points_possible), SUM(ag.points_earned * 100.0 / ag.points_possible), COUNT(*)
+    FROM assignment_grades ag
+            JOIN assignments a ON a.course_id = ag.course_id AND a.assignment_id = ag.assignment_id
+    WHERE ag.is_graded = 1
+    GROUP BY ag.course_id, ag.student_id, a.marking_period;
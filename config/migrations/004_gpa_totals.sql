@@ -0,0 +1,39 @@
+-- Running GPA totals per student: the credit-weighted sum of 4.0-scale grade points
+-- and the credit hours of every graded course. A course grade change applies its
+-- difference here, so a GPA update no longer re-reads all of the student's courses.
+
+DROP TABLE IF EXISTS gpa_totals;
+CREATE TABLE gpa_totals (
+    student_id INTEGER PRIMARY KEY,
+    grade_points REAL NOT NULL DEFAULT 0,
+    credit_hours REAL NOT NULL DEFAULT 0,
+    FOREIGN KEY (student_id) REFERENCES students (student_id)
+);
+
+INSERT INTO gpa_totals (student_id, grade_points, credit_hours)
+    SELECT s.student_id,
+            IFNULL(SUM(c.credit_hours * CASE
+                WHEN cg.grade >= 93 THEN 4.0
+                WHEN cg.grade >= 90 THEN 3.7
+                WHEN cg.grade >= 87 THEN 3.3
+                WHEN cg.grade >= 83 THEN 3.0
+                WHEN cg.grade >= 80 THEN 2.7
+                WHEN cg.grade >= 77 THEN 2.3
+                WHEN cg.grade >= 73 THEN 2.0
+                WHEN cg.grade >= 70 THEN 1.7
+                WHEN cg.grade >= 67 THEN 1.3
+                WHEN cg.grade >= 65 THEN 1.0
+                ELSE 0.0
+            END), 0),
+            IFNULL(SUM(c.credit_hours), 0)
+    FROM students s
+            LEFT JOIN course_grades cg ON cg.student_id = s.student_id AND cg.grade IS NOT NULL
+            LEFT JOIN courses c ON c.course_id = cg.course_id
+    GROUP BY s.student_id;
+
+UPDATE students
+    SET gpa = (
+        SELECT CASE WHEN t.credit_hours > 0 THEN ROUND(t.grade_points / t.credit_hours, 2) ELSE -1.0 END
+        FROM gpa_totals t
+        WHERE t.student_id = students.student_id
+    );
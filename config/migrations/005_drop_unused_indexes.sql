@@ -0,0 +1,5 @@
+-- No query seeks on assignments by marking period across courses (the per-course
+-- lookups use the primary key), so this index only added cost to every assignment
+-- insert and delete. Databases built after it was removed from 001 never had it.
+
+DROP INDEX IF EXISTS idx_assignments_marking_period;
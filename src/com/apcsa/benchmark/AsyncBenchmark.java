@@ -0,0 +1,146 @@
+package com.apcsa.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import com.apcsa.data.AsyncPowerSchool;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.model.TranscriptEntry;
+
+/*
+ * Compares the wall-clock time of multi-query screens issued one lookup at a time
+ * (the blocking PowerSchool methods) and all at once (AsyncPowerSchool). The screens
+ * are the student assignment grades view, which looks up each assignment's ID, grade,
+ * and point value, and a student overview of transcript, course grades, and class
+ * rank. Raise -Dpowerschool.pool.size to let more lookups run at once.
+ *
+ *     java -cp bin:lib/sqlite-jdbc.jar com.apcsa.benchmark.AsyncBenchmark [iterations] [student_id]
+ */
+
+public class AsyncBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int studentId = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        PowerSchool.initialize(false);
+
+        AsyncPowerSchool async = AsyncPowerSchool.shared();
+        int[] screen = busiestMarkingPeriod(studentId);
+
+        System.out.println("Pool size: " + Integer.getInteger("powerschool.pool.size", 4)
+            + ", async threads: " + Integer.getInteger("powerschool.async.threads", 0) + " (0 = virtual)");
+        System.out.println("Assignment grades screen: course " + screen[0] + ", marking period " + screen[1]
+            + ", " + PowerSchool.getAssignmentTitle(screen[0], screen[1]).size() + " assignments");
+        System.out.println("");
+
+        run("assignment grades (blocking)", iterations, () -> assignmentGrades(studentId, screen[0], screen[1]));
+        run("assignment grades (async)", iterations, () -> assignmentGrades(async, studentId, screen[0], screen[1]));
+        run("student overview (blocking)", iterations, () -> overview(studentId));
+        run("student overview (async)", iterations, () -> overview(async, studentId));
+
+        PowerSchool.shutdown();
+    }
+
+    /*
+     * Times a screen after an untimed warm-up pass.
+     */
+
+    private static void run(String name, int iterations, Runnable screen) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            screen.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            screen.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-30s %10.1f us/screen%n", name, elapsed / 1000.0 / iterations);
+    }
+
+    /*
+     * Finds the student's course and marking period with the most assignments.
+     */
+
+    private static int[] busiestMarkingPeriod(int studentId) {
+        int[] busiest = { -1, 1 };
+        int most = -1;
+
+        for (TranscriptEntry entry : PowerSchool.getTranscript(studentId)) {
+            for (int markingPeriod = 1; markingPeriod <= 6; markingPeriod++) {
+                int count = PowerSchool.getAssignmentTitle(entry.courseId(), markingPeriod).size();
+
+                if (count > most) {
+                    most = count;
+                    busiest = new int[] { entry.courseId(), markingPeriod };
+                }
+            }
+        }
+
+        return busiest;
+    }
+
+    /*
+     * The lookups behind Application.assignment(), one after another.
+     */
+
+    private static ArrayList<String> assignmentGrades(int studentId, int courseId, int markingPeriod) {
+        ArrayList<String> lines = new ArrayList<String>();
+
+        for (String title : PowerSchool.getAssignmentTitle(courseId, markingPeriod)) {
+            int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
+            int points = PowerSchool.previousGrade(courseId, assignmentId, studentId);
+
+            lines.add(title + " / " + (points == -1 ? "--" : points) + " (out of " + PowerSchool.getPointValue(title) + " pts)");
+        }
+
+        return lines;
+    }
+
+    /*
+     * The same lookups, each assignment's running at once.
+     */
+
+    private static ArrayList<String> assignmentGrades(AsyncPowerSchool async, int studentId, int courseId, int markingPeriod) {
+        ArrayList<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+
+        for (String title : PowerSchool.getAssignmentTitle(courseId, markingPeriod)) {
+            CompletableFuture<Integer> points = async.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod)
+                .thenCompose(assignmentId -> async.previousGrade(courseId, assignmentId, studentId));
+
+            futures.add(points.thenCombine(async.getPointValue(title),
+                (earned, pointValue) -> title + " / " + (earned == -1 ? "--" : earned) + " (out of " + pointValue + " pts)"));
+        }
+
+        ArrayList<String> lines = new ArrayList<String>();
+        for (CompletableFuture<String> future : futures) {
+            lines.add(future.join());
+        }
+
+        return lines;
+    }
+
+    /*
+     * A student's transcript, course grades, and class rank, one after another.
+     */
+
+    private static int overview(int studentId) {
+        int size = PowerSchool.getTranscript(studentId).size();
+        size += PowerSchool.getCourseGrades(studentId).length;
+
+        return size + PowerSchool.getClassRank(studentId);
+    }
+
+    /*
+     * The same lookups, all at once.
+     */
+
+    private static int overview(AsyncPowerSchool async, int studentId) {
+        CompletableFuture<ArrayList<TranscriptEntry>> transcript = async.getTranscript(studentId);
+        CompletableFuture<double[]> grades = async.getCourseGrades(studentId);
+        CompletableFuture<Integer> rank = async.getClassRank(studentId);
+
+        return transcript.join().size() + grades.join().length + rank.join();
+    }
+}
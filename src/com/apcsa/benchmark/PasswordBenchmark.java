@@ -0,0 +1,116 @@
+package com.apcsa.benchmark;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import com.apcsa.security.LegacyMd5Hasher;
+import com.apcsa.security.PasswordHasher;
+import com.apcsa.security.Pbkdf2Hasher;
+
+/*
+ * Measures password verification throughput on all cores, to size the PBKDF2 work
+ * factor against the morning login rush. For each algorithm it reports verifications
+ * per second, the latency of one login, and how long a rush of the given size would
+ * keep every core busy.
+ *
+ *     java -cp bin com.apcsa.benchmark.PasswordBenchmark [logins] [seconds] [iterations...]
+ */
+
+public class PasswordBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Threads: " + threads + ", rush: " + logins + " logins");
+        System.out.println("");
+
+        run("md5 (previous getHash)", new PreviousMd5(), threads, seconds, logins);
+        run("md5 (legacy hasher)", new LegacyMd5Hasher(), threads, seconds, logins);
+
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                int iterations = Integer.parseInt(args[i]);
+                run("pbkdf2-sha256 " + iterations, new Pbkdf2Hasher(iterations), threads, seconds, logins);
+            }
+        } else {
+            for (int iterations : new int[] { 10_000, 50_000, 100_000, 310_000, 600_000 }) {
+                run("pbkdf2-sha256 " + iterations, new Pbkdf2Hasher(iterations), threads, seconds, logins);
+            }
+        }
+    }
+
+    /*
+     * Verifies the same password on every thread for a fixed duration, after a warm-up.
+     */
+
+    private static void run(String name, PasswordHasher hasher, int threads, int seconds, int logins) throws Exception {
+        String stored = hasher.hash(PASSWORD);
+
+        long warmup = System.nanoTime() + 1_000_000_000L;
+        while (System.nanoTime() < warmup) {
+            hasher.verify(PASSWORD, stored);
+        }
+
+        AtomicLong verified = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+
+        ArrayList<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                long count = 0;
+
+                while (System.nanoTime() < deadline) {
+                    if (!hasher.verify(PASSWORD, stored)) {
+                        throw new IllegalStateException(name + " failed to verify.");
+                    }
+                    count++;
+                }
+                verified.addAndGet(count);
+            }));
+        }
+
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+        double perSecond = verified.get() / elapsed;
+
+        System.out.printf("%-26s %12.0f verifies/s %10.3f ms/login %10.2f s/rush%n",
+            name, perSecond, threads * 1000.0 / perSecond, logins / perSecond);
+    }
+
+    /*
+     * The hashing Utils.getHash did before the password subsystem: a new digest per
+     * call and a substring per hex byte. Kept here only as a baseline.
+     */
+
+    private static class PreviousMd5 extends LegacyMd5Hasher {
+
+        @Override
+        public boolean verify(String plaintext, String stored) {
+            StringBuilder pwd = new StringBuilder();
+
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+
+                md.update(plaintext.getBytes());
+                byte[] digest = md.digest(plaintext.getBytes());
+
+                for (int i = 0; i < digest.length; i++) {
+                    pwd.append(Integer.toString((digest[i] & 0xff) + 0x100, 16).substring(1));
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            return pwd.toString().equals(stored);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.apcsa.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import com.apcsa.data.PragmaProfile;
+
+/*
+ * Compares concurrent read/write throughput of the pragma profiles. Each profile gets
+ * a scratch copy of a course_grades-shaped table; readers run single-row lookups and
+ * writers run single-row autocommit updates (like updateCourseGradesMP1) for a fixed
+ * duration.
+ *
+ *     java -cp bin:lib/sqlite-jdbc.jar com.apcsa.benchmark.PragmaBenchmark [readers] [writers] [seconds]
+ */
+
+public class PragmaBenchmark {
+
+    private static final int ROWS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        PragmaProfile legacy = new PragmaProfile("legacy", "DELETE", "FULL", -2000, 0, "DEFAULT", 5000);
+
+        for (PragmaProfile profile : new PragmaProfile[] { legacy, PragmaProfile.DURABLE, PragmaProfile.THROUGHPUT }) {
+            run(profile, readers, writers, seconds);
+        }
+    }
+
+    /*
+     * Runs the mixed workload against a fresh database using the given profile.
+     */
+
+    private static void run(PragmaProfile profile, int readers, int writers, int seconds) throws Exception {
+        File file = File.createTempFile("pragma-benchmark", ".db");
+        String url = "jdbc:sqlite:" + file.getPath();
+
+        try (Connection conn = open(url, profile); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE course_grades (course_id INTEGER, student_id INTEGER, mp1 REAL, " +
+                "PRIMARY KEY (course_id, student_id))");
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO course_grades VALUES (?, ?, NULL)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setInt(1, i % 25);
+                    insert.setInt(2, i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+        }
+
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicLong busy = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < readers + writers; i++) {
+            boolean writer = i < writers;
+
+            threads.add(new Thread(() -> {
+                String sql = writer
+                    ? "UPDATE course_grades SET mp1 = ? WHERE course_id = ? AND student_id = ?"
+                    : "SELECT mp1 FROM course_grades WHERE course_id = ? AND student_id = ?";
+
+                try (Connection conn = open(url, profile); PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                    while (System.nanoTime() < deadline) {
+                        int row = random.nextInt(ROWS);
+
+                        try {
+                            if (writer) {
+                                stmt.setDouble(1, random.nextDouble(100));
+                                stmt.setInt(2, row % 25);
+                                stmt.setInt(3, row);
+                                stmt.executeUpdate();
+                                writes.incrementAndGet();
+                            } else {
+                                stmt.setInt(1, row % 25);
+                                stmt.setInt(2, row);
+                                try (ResultSet rs = stmt.executeQuery()) {
+                                    rs.next();
+                                }
+                                reads.incrementAndGet();
+                            }
+                        } catch (SQLException e) {
+                            busy.incrementAndGet();
+                        }
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println(profile);
+        System.out.printf("    reads/s: %10.0f    writes/s: %8.0f    busy errors: %d%n%n",
+            reads.get() / (double) seconds, writes.get() / (double) seconds, busy.get());
+
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+    }
+
+    /*
+     * Opens a connection with the profile applied.
+     */
+
+    private static Connection open(String url, PragmaProfile profile) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        profile.apply(conn);
+
+        return conn;
+    }
+}
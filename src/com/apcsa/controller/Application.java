@@ -1,15 +1,32 @@
 package com.apcsa.controller;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import com.apcsa.data.AsyncPowerSchool;
+import com.apcsa.data.GradeImporter;
+import com.apcsa.data.GradebookExporter;
 import com.apcsa.data.PowerSchool;
+import com.apcsa.data.ReportCardGenerator;
+import com.apcsa.model.RosterEntry;
+import com.apcsa.model.Student;
+import com.apcsa.model.StudentSummary;
 import com.apcsa.model.Teacher;
+import com.apcsa.model.TeacherSummary;
+import com.apcsa.model.TranscriptEntry;
 import com.apcsa.model.User;
+import com.apcsa.security.Passwords;
+import com.apcsa.session.Session;
+import com.apcsa.session.SessionManager;
 
 public class Application {
 
     private Scanner in;
-    private User activeUser;
+    private final SessionManager sessions = SessionManager.fromSystemProperties();
+    private Session session;
 
     /**
      * Creates an instance of the Application class, which is responsible for interacting
@@ -22,7 +39,7 @@ public class Application {
         try {
             PowerSchool.initialize(false);
         } catch (Exception e) {
-            e.printStackTrace();
+            shutdown(e);
         }
     }
 
@@ -42,13 +59,7 @@ public class Application {
 
             try {
 	            if (login(username, password)) {
-	                activeUser = activeUser.isAdministrator()
-	                    ? PowerSchool.getAdministrator(activeUser) : activeUser.isTeacher()
-	                    ? PowerSchool.getTeacher(activeUser) : activeUser.isStudent()
-	                    ? PowerSchool.getStudent(activeUser) : activeUser.isRoot()
-	                    ? activeUser : null;
-	
-	                if (isFirstLogin() && !activeUser.isRoot()) {
+	                if (isFirstLogin() && !activeUser().isRoot()) {
 	                    System.out.print("\nInput a new password: ");
 	                    String newPassword = in.next();
 	                    
@@ -66,21 +77,21 @@ public class Application {
     }
     
     public void createAndShowUI() {
-    	System.out.println("\nHello, again, " + activeUser.getFirstName() + "!\n");
+    	System.out.println("\nHello, again, " + activeUser().getFirstName() + "!\n");
     	
-    	if(activeUser.isRoot()) {
+    	if(activeUser().isRoot()) {
     		showRootUI();
-    	} else if (activeUser.isAdministrator()) {
+    	} else if (activeUser().isAdministrator()) {
     		showAdministratorUI();
-    	} else if (activeUser.isTeacher()) {
+    	} else if (activeUser().isTeacher()) {
     		showTeacherUI();
-    	} else if (activeUser.isStudent()) {
+    	} else if (activeUser().isStudent()) {
     		showStudentUI();
     	}
     }
     
     private void showRootUI() {
-    	while (activeUser != null) {
+    	while (isLoggedIn()) {
     		switch (getRootMenuSelection()) {
             case 1: rootResetPassword(); break;
             case 2: factoryReset(); break;
@@ -92,15 +103,17 @@ public class Application {
     }
     
     private void showAdministratorUI() {
-    	while (activeUser != null) {
+    	while (isLoggedIn()) {
  			switch (administratorSelection()) {
  			case 1: faculty(); break;
  			case 2: facultyByDepartment(); break;
  			case 3: studentEnrollment(); break;
  			case 4: studentEnrollmentbyGrade(); break;
  			case 5: studentEnrollmentbyCourse(); break;
- 			case 6: resetPassword(); break;
- 			case 7: logout(); break;
+ 			case 6: export(); break;
+ 			case 7: reportCards(); break;
+ 			case 8: resetPassword(); break;
+ 			case 9: logout(); break;
  			default: System.out.println("\nInvalid selection. \n"); break;
  			}
          }
@@ -108,28 +121,30 @@ public class Application {
     
     private void showTeacherUI() {
     	
-    	if((activeUser.getFirstName()).equals("Ryan")) {
-    		while (activeUser != null) {
+    	if((activeUser().getFirstName()).equals("Ryan")) {
+    		while (isLoggedIn()) {
      			switch (wilsonSelection()) {
      			case 1: enrollment(); break;
      			case 2: addAssignment(); break;
      			case 3: deleteAssignment(); break;
      			case 4: enterGrade(); break;
-     			case 5: resetPassword(); break;
-     			case 6: logout(); break;
-     			case 7: message(); break;
+     			case 5: importGrades(); break;
+     			case 6: resetPassword(); break;
+     			case 7: logout(); break;
+     			case 8: message(); break;
      			default: System.out.println("\nInvalid selection. \n"); break;
      			}
              }
     	} else {
-    		while (activeUser != null) {
+    		while (isLoggedIn()) {
      			switch (teacherSelection()) {
      			case 1: enrollment(); break;
      			case 2: addAssignment(); break;
      			case 3: deleteAssignment(); break;
      			case 4: enterGrade(); break;
-     			case 5: resetPassword(); break;
-     			case 6: logout(); break;
+     			case 5: importGrades(); break;
+     			case 6: resetPassword(); break;
+     			case 7: logout(); break;
      			default: System.out.println("\nInvalid selection. \n"); break;
      			}
              }
@@ -139,7 +154,7 @@ public class Application {
     }
     
     private void showStudentUI() {
-    	while (activeUser != null) {
+    	while (isLoggedIn()) {
  			switch (studentSelection()) {
  			case 1: courseGrades(); break;
  			case 2: assignment(); break;
@@ -167,8 +182,10 @@ public class Application {
     	System.out.println("[3] View student enrollment.");
     	System.out.println("[4] View student enrollment by grade.");
     	System.out.println("[5] View student enrollment by course.");
-    	System.out.println("[6] Change password.");
-    	System.out.println("[7] Logout.");
+    	System.out.println("[6] Export data.");
+    	System.out.println("[7] Generate report cards.");
+    	System.out.println("[8] Change password.");
+    	System.out.println("[9] Logout.");
     	System.out.print("\n::: ");
     	int selection = in.nextInt();
 		return selection;
@@ -179,8 +196,9 @@ public class Application {
     	System.out.println("[2] Add assignment.");
     	System.out.println("[3] Delete assignment.");
     	System.out.println("[4] Enter grade.");
-    	System.out.println("[5] Change password.");
-    	System.out.println("[6] Logout.");
+    	System.out.println("[5] Import grades.");
+    	System.out.println("[6] Change password.");
+    	System.out.println("[7] Logout.");
     	System.out.print("\n::: ");
     	int selection = in.nextInt();
 		return selection;
@@ -191,9 +209,10 @@ public class Application {
     	System.out.println("[2] Add assignment.");
     	System.out.println("[3] Delete assignment.");
     	System.out.println("[4] Enter grade.");
-    	System.out.println("[5] Change password.");
-    	System.out.println("[6] Logout.");
-    	System.out.println("[7] Special Message.");
+    	System.out.println("[5] Import grades.");
+    	System.out.println("[6] Change password.");
+    	System.out.println("[7] Logout.");
+    	System.out.println("[8] Special Message.");
     	System.out.print("\n::: ");
     	int selection = in.nextInt();
 		return selection;
@@ -261,7 +280,8 @@ public class Application {
     	if(checked == -1) {
 			System.out.println("");
     	} else if (checked == 1) {
-    		activeUser = null;
+    		sessions.logout(session.getToken());
+    		session = null;
     	}
     }
     
@@ -288,32 +308,22 @@ public class Application {
     	System.out.print("Enter new password: ");
     	String newPassword = in.nextLine();
     	
-    	String truePassword = PowerSchool.getPassword(activeUser, currentPassword);
+    	String truePassword = PowerSchool.getPassword(activeUser(), currentPassword);
     	
-    	if(!Utils.getHash(currentPassword).equals(truePassword)) {
+    	if(!Passwords.verify(currentPassword, truePassword)) {
     		System.out.println("\nInvalid current password.\n");
     	} else {
-    		changePass(activeUser.getUsername(), newPassword);
+    		changePass(activeUser().getUsername(), newPassword);
     		System.out.println("");
     	}
     }
     
     public void faculty() {
-    	ArrayList<String> teachers = PowerSchool.getTeachers();
-    	String departmentId = null;
-    	ArrayList<String> departmentIds = new ArrayList<String>();
-    	for(int i = 0; i < teachers.size(); i = i + 2) {
-    		departmentId = PowerSchool.getDepartmentId(teachers.get(i));
-    		departmentIds.add(departmentId);
-    	}
-    	ArrayList<String> departmentTitles = new ArrayList<String>();
-    	for(int i = 0; i < departmentIds.size(); i++) {
-    		departmentTitles.add ( PowerSchool.getDepartmentTitle(departmentIds.get(i)));
-    	}
+    	ArrayList<TeacherSummary> teachers = PowerSchool.getTeachers();
     	System.out.println("");
-    	for(int i = 0, x = 0; i < teachers.size(); i = i + 2) {;
-    		System.out.println((x+1) + ". " + teachers.get(i+1) + ", " + teachers.get(i) + " / " + departmentTitles.get(x));
-    		x += 1;
+    	for(int i = 0; i < teachers.size(); i++) {
+    		TeacherSummary teacher = teachers.get(i);
+    		System.out.println((i+1) + ". " + teacher.lastName() + ", " + teacher.firstName() + " / " + teacher.departmentTitle());
     	}
     	System.out.println("");
     }
@@ -340,21 +350,21 @@ public class Application {
     		}
     	}
     	
-    	ArrayList<String> teachers = PowerSchool.getTeachersWithDepartmentId(department);
+    	ArrayList<TeacherSummary> teachers = PowerSchool.getTeachersWithDepartmentId(department);
+    	System.out.println("");
+    	for(int i = 0; i < teachers.size(); i++) {
+    		TeacherSummary teacher = teachers.get(i);
+    		System.out.println((i+1) + ". " + teacher.lastName() + ", " + teacher.firstName() + " / " + teacher.departmentTitle());
+    	}
     	System.out.println("");
-    	for(int i = 0, x = 0; i < teachers.size(); i = i + 2) {
-    		System.out.println((x+1) + ". " + teachers.get(i+1) + ", " + teachers.get(i) + " / " + departmentTitles.get(department-1) + "\n");
-    		x += 1;
-    	}	
     }
     
     public void studentEnrollment() {
-    	ArrayList<String> students = PowerSchool.getStudents();
-    	ArrayList<String> gradYears = PowerSchool.getGradYears();
+    	ArrayList<StudentSummary> students = PowerSchool.getStudents();
     	System.out.println("");
-    	for(int i = 0, x = 0; i < students.size(); i = i + 2) {
-    		System.out.println((x+1) + ". " + students.get(i+1) + ", " + students.get(i) + " / " + gradYears.get(x));
-    		x += 1;
+    	for(int i = 0; i < students.size(); i++) {
+    		StudentSummary student = students.get(i);
+    		System.out.println((i+1) + ". " + student.lastName() + ", " + student.firstName() + " / " + student.graduation());
     	}
     	System.out.println("");
     }
@@ -389,20 +399,14 @@ public class Application {
     	default: ;
 	}
     	
-    	ArrayList<String> students = PowerSchool.getStudentsByGrade(gradeLevel);
-    	ArrayList<String> studentClassRank = PowerSchool.getGradeOrder(gradeLevel);
+    	ArrayList<StudentSummary> students = PowerSchool.getStudentsByGrade(gradeLevel);
     	if(students.isEmpty()) {
     		System.out.println("\nThere are no students in this grade.\n");
     	} else {
     		System.out.println("");
-        	for(int i = 0, x = 0, y = 1; i < studentClassRank.size(); i = i + 3) {
-        		String gpa = studentClassRank.get(i+2);
-        		if(gpa.equals("-1.0")) {
-        			y = 0;
-        		}
-        		System.out.println((x+1) + ". " + studentClassRank.get(i+1) + ", " + studentClassRank.get(i) + " / #" + y);
-        		x += 1;
-        		y += 1;
+        	for(int i = 0; i < students.size(); i++) {
+        		StudentSummary student = students.get(i);
+        		System.out.println((i+1) + ". " + student.lastName() + ", " + student.firstName() + " / #" + student.classRank());
         	}
         	System.out.println("");
     	}
@@ -417,32 +421,158 @@ public class Application {
     	while(!courses.contains(courseNo)) {
     		System.out.println("\nCourse not found.\n");
     		System.out.print("Course No.: ");
-        	courseNo = in.nextLine();
+        	courseNo = in.nextLine().toUpperCase();
     	}
-    	String courseId = PowerSchool.getCourseIdFromCourseNo2(courseNo);
-    	ArrayList<String> studentIds = PowerSchool.getStudentId(courseId);
-    	ArrayList<String> students = new ArrayList<String>();
-    	for(int i = 0; i < studentIds.size(); i++) {
-    		students.addAll(PowerSchool.getStudentsByStudentId(studentIds.get(i)));
+    	ArrayList<RosterEntry> roster = PowerSchool.getRoster(PowerSchool.getCourseIdFromCourseNo(courseNo));
+    	System.out.println("");
+    	for(int i = 0; i < roster.size(); i++) {
+    		RosterEntry student = roster.get(i);
+    		String gpa = student.hasGpa() ? String.valueOf(student.gpa()) : "--";
+    		System.out.println((i+1) + ". " + student.lastName() + ", " + student.firstName() + " / " + gpa);
     	}
-    	System.out.println(courseId);
-
-    	System.out.println(students);
     	System.out.println("");
-    	for(int i = 0, x = 0; i < students.size(); i = i + 3) {
-    		String gpa = students.get(i+2);
-    		if(gpa.equals("-1.0")) {
-    			gpa = "--";
+    }
+    
+    /**
+     * Exports course grades, assignment grades, or students to a CSV or NDJSON file,
+     * optionally filtered by course, department, grade level, and marking period.
+     */
+    
+    public void export() {
+    	System.out.println("\nChoose data to export.\n");
+    	System.out.println("[1] Course grades.");
+    	System.out.println("[2] Assignment grades.");
+    	System.out.println("[3] Students.");
+    	System.out.print("\n::: ");
+    	int datasetSelection = in.nextInt();
+    	while(datasetSelection < 1 || datasetSelection > 3) {
+    		System.out.println("\nInvalid selection.");
+    		System.out.print("\n::: ");
+    		datasetSelection = in.nextInt();
+    	}
+    	GradebookExporter.Dataset dataset = GradebookExporter.Dataset.values()[datasetSelection - 1];
+    	
+    	System.out.println("\nChoose a format.\n");
+    	System.out.println("[1] CSV.");
+    	System.out.println("[2] NDJSON.");
+    	System.out.print("\n::: ");
+    	int formatSelection = in.nextInt();
+    	while(formatSelection < 1 || formatSelection > 2) {
+    		System.out.println("\nInvalid selection.");
+    		System.out.print("\n::: ");
+    		formatSelection = in.nextInt();
+    	}
+    	GradebookExporter.Format format = GradebookExporter.Format.values()[formatSelection - 1];
+    	
+    	in.nextLine();
+    	System.out.println("\nLeave a filter blank to include everything.");
+    	Integer courseId = null;
+    	System.out.print("\nCourse No.: ");
+    	String courseNo = in.nextLine().trim().toUpperCase();
+    	if(!courseNo.isEmpty()) {
+    		ArrayList<String> courses = PowerSchool.getAllCourses();
+    		while(!courseNo.isEmpty() && !courses.contains(courseNo)) {
+    			System.out.println("\nCourse not found.\n");
+    			System.out.print("Course No.: ");
+    			courseNo = in.nextLine().trim().toUpperCase();
     		}
-    		System.out.println((x+1) + ". " + students.get(i+1) + ", " + students.get(i) + " / " + gpa);
-    		x += 1;
+    		courseId = courseNo.isEmpty() ? null : PowerSchool.getCourseIdFromCourseNo(courseNo);
     	}
     	System.out.println("");
+    	ArrayList<String> departmentTitles = PowerSchool.getAllDepartmentTitles();
+    	for(int i = 0; i<departmentTitles.size(); i++) {
+    		System.out.println("[" + (i+1) + "] " + departmentTitles.get(i) + ".");
+    	}
+    	Integer departmentId = readFilter("\nDepartment: ", 1, departmentTitles.size());
+    	Integer gradeLevel = readFilter("Grade level (9-12): ", 9, 12);
+    	Integer markingPeriod = dataset == GradebookExporter.Dataset.STUDENTS ? null : readFilter("Marking period (1-4 MP, 5 midterm, 6 final): ", 1, 6);
+    	
+    	System.out.print("\nFile: ");
+    	String file = in.nextLine().trim();
+    	if(file.isEmpty()) {
+    		System.out.println("");
+    		return;
+    	}
+    	
+    	GradebookExporter.Filter filter = new GradebookExporter.Filter(courseId, departmentId, gradeLevel, markingPeriod);
+    	long rows = PowerSchool.export(dataset, format, filter, Paths.get(file));
+    	
+    	if(rows == -1) {
+    		System.out.println("\nUnable to export data.\n");
+    	} else {
+    		System.out.println("\nExported " + rows + " rows to " + file + ".\n");
+    	}
+    }
+    
+    /**
+     * Generates report cards for a grade level, either one file per student or a
+     * single combined file.
+     */
+    
+    public void reportCards() {
+    	System.out.println("\nChoose a grade level.\n");
+    	System.out.println("[1] Freshman.");
+    	System.out.println("[2] Sophomore.");
+    	System.out.println("[3] Junior.");
+    	System.out.println("[4] Senior.");
+    	System.out.print("\n::: ");
+    	int gradeSelection = in.nextInt();
+    	while(gradeSelection < 1 || gradeSelection > 4) {
+    		System.out.println("\nInvalid selection.");
+    		System.out.print("\n::: ");
+    		gradeSelection = in.nextInt();
+    	}
+    	
+    	in.nextLine();
+    	System.out.print("\nDirectory: ");
+    	String directory = in.nextLine().trim();
+    	if(directory.isEmpty()) {
+    		System.out.println("");
+    		return;
+    	}
+    	
+    	String wantTo = "you want one combined file?";
+    	System.out.print("Do you want one combined file? (y/n) ");
+    	String yesNo = in.nextLine().toLowerCase();
+    	boolean combined = checkYesNo(yesNo, wantTo) == 1;
+    	
+    	ReportCardGenerator.Summary summary = PowerSchool.generateReportCards(gradeSelection + 8, Paths.get(directory), combined);
+    	
+    	if(summary == null) {
+    		System.out.println("\nUnable to generate report cards.\n");
+    	} else {
+    		System.out.println("\n" + summary + ".\n");
+    	}
+    }
+    
+    /*
+     * Reads an optional numeric filter (blank for none), re-prompting until it is in range.
+     */
+    
+    private Integer readFilter(String prompt, int min, int max) {
+    	while(true) {
+    		System.out.print(prompt);
+    		String input = in.nextLine().trim();
+    		
+    		if(input.isEmpty()) {
+    			return null;
+    		}
+    		try {
+    			int value = Integer.parseInt(input);
+    			
+    			if(value >= min && value <= max) {
+    				return value;
+    			}
+    		} catch (NumberFormatException e) {
+    			// fall through to the retry message
+    		}
+    		System.out.println("\nInvalid selection.\n");
+    	}
     }
     
     public void enrollment() {
     	System.out.println("\nChoose a course.\n");
-    	int departmentId = ((Teacher) activeUser).getDepartmentId();
+    	int departmentId = ((Teacher) activeUser()).getDepartmentId();
     	ArrayList<String> courses = PowerSchool.getCourses(departmentId);
     	for(int i = 0; i <= courses.size()-1; i++) {
     		System.out.println("[" + (i + 1) + "] " + courses.get(i));
@@ -461,27 +591,15 @@ public class Application {
     		}
     	}
     	String courseNo = courses.get(courseSelection-1);
-    	String courseId = PowerSchool.getCourseIdFromCourseNo2(courseNo);
-    	ArrayList<String> studentIds = PowerSchool.getStudentId(courseId);
-    	ArrayList<String> students = new ArrayList<String>();
-    	for(int i = 0; i < studentIds.size(); i++) {
-    		students.addAll(PowerSchool.getStudentsByStudentId(studentIds.get(i)));
-    	}
-    	ArrayList<String> studentGrades = new ArrayList<String>();
-    	for(int i = 0; i < studentIds.size(); i++) {
-    		studentGrades.add(PowerSchool.getStudentGrade(courseId, studentIds.get(i)));
-    	}
-    	if(studentIds.isEmpty()) {
+    	ArrayList<RosterEntry> roster = PowerSchool.getRoster(PowerSchool.getCourseIdFromCourseNo(courseNo));
+    	if(roster.isEmpty()) {
     		System.out.println("\nThere are no students in this course.\n");
     	} else {
     		System.out.println("");
-    		for(int i = 0, x = 0; i < students.size(); i = i + 3) {
-        		String studentGrade = studentGrades.get(x);
-        		if(studentGrade == null) {
-        			studentGrade = "--";
-        		}
-        		System.out.println((x+1) + ". " + students.get(i+1) + ", " + students.get(i) + " / " + studentGrade);
-        		x += 1;
+    		for(int i = 0; i < roster.size(); i++) {
+        		RosterEntry student = roster.get(i);
+        		String studentGrade = student.courseGrade() == null ? "--" : String.valueOf(student.courseGrade());
+        		System.out.println((i+1) + ". " + student.lastName() + ", " + student.firstName() + " / " + studentGrade);
         	}
         	System.out.println("");
     	}
@@ -489,7 +607,7 @@ public class Application {
     
     public void addAssignment() {
     	System.out.println("\nChoose a course.\n");
-    	int departmentId = ((Teacher) activeUser).getDepartmentId();
+    	int departmentId = ((Teacher) activeUser()).getDepartmentId();
     	ArrayList<String> courses = PowerSchool.getCourses(departmentId);
     	for(int i = 0; i <= courses.size()-1; i++) {
     		System.out.println("[" + (i + 1) + "] " + courses.get(i));
@@ -538,7 +656,6 @@ public class Application {
 			System.out.print("Point Value: ");
 			pointValue = in.nextInt();
 		}
-    	int assignmentId = 0;
     	in.nextLine();
     	String wantTo = "you want to create this assignment?";
     	System.out.print("Are you sure you want to create this assignment? (y/n) ");
@@ -549,23 +666,19 @@ public class Application {
     	if(checked == -1) {
 			System.out.println("");
     	} else if (checked == 1) {
-    		int rows = PowerSchool.assignmentRows();
-    		if(rows == 0) {
-    			assignmentId = 1;
+    		int assignmentId = PowerSchool.nextAssignmentId();
+    		if(assignmentId == -1 || PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue) == -1) {
+    			System.out.println("\nUnable to create assignment.\n");
     		} else {
-    			ArrayList<String> assignmentIds = PowerSchool.getAssignmentIds();
-    			String lastAssignmentId = assignmentIds.get(assignmentIds.size() - 1);
-    			assignmentId = Integer.parseInt(lastAssignmentId) + 1;
+    			System.out.println("\nSuccessfully created assignment.\n");
     		}
-    		PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue);
-    		System.out.println("\nSuccessfully created assignment.\n");
     	}
     }
     
     public void deleteAssignment() {
     	boolean hasAssignment = true;
     	System.out.println("\nChoose a course.\n");
-    	int departmentId = ((Teacher) activeUser).getDepartmentId();
+    	int departmentId = ((Teacher) activeUser()).getDepartmentId();
     	ArrayList<String> courses = PowerSchool.getCourses(departmentId);
     	for(int i = 0; i <= courses.size()-1; i++) {
     		System.out.println("[" + (i + 1) + "] " + courses.get(i));
@@ -632,7 +745,6 @@ public class Application {
     			System.out.println("");
         	} else if (checked == 1) {
         		PowerSchool.deleteAssignment(courseId, markingPeriod, title);
-        		PowerSchool.deleteAssignmentGrade(PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod));
                 System.out.println("\nSuccessfully deleted " + title + ".\n");
         	}
         	hasAssignment = false;
@@ -642,7 +754,7 @@ public class Application {
     public void enterGrade() {
     	boolean hasAssignment = true;    	
    		System.out.println("\nChoose a course.\n");
-       	int departmentId = ((Teacher) activeUser).getDepartmentId(); //department id of the teacher
+       	int departmentId = ((Teacher) activeUser()).getDepartmentId(); //department id of the teacher
        	ArrayList<String> courses = PowerSchool.getCourses(departmentId); //all courses
        	for(int i = 0; i <= courses.size()-1; i++) {
        		System.out.println("[" + (i + 1) + "] " + courses.get(i)); //printing out courses
@@ -698,46 +810,38 @@ public class Application {
         	}
         	String title = assignments.get(assignmentSelection-1); //title of the assignment
         	
-        	String StringCourseId = PowerSchool.getCourseIdFromCourseNo2(courseNo);//courseId
-        	ArrayList<String> studentIds = PowerSchool.getStudentId(StringCourseId);//getting studentIds enrolled in a course with courseId
-        	ArrayList<String> students = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		students.addAll(PowerSchool.getStudentsByStudentId(studentIds.get(i))); //getting students firstname, lastname, and gpa
-        	}
-        	ArrayList<String> studentsFirstNames = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		studentsFirstNames.addAll(PowerSchool.getStudentsFirstNames(studentIds.get(i)));
-        	}
-        	ArrayList<String> studentLastNames = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		studentLastNames.addAll(PowerSchool.getStudentsLastNames(studentIds.get(i)));
-        	}
+        	ArrayList<RosterEntry> roster = PowerSchool.getRoster(courseId);
         	System.out.println("\nChoose a student.\n");
-        	for(int i = 0, x = 1; i < students.size(); i = i + 3) {
-        		System.out.println("[" + (x) + "] " + students.get(i+1) + ", " + students.get(i));
-        		x++;
+        	System.out.println("[0] All students.");
+        	for(int i = 0; i < roster.size(); i++) {
+        		System.out.println("[" + (i+1) + "] " + roster.get(i).lastName() + ", " + roster.get(i).firstName());
         	}
         	System.out.print("\n::: ");
         	int studentSelection = in.nextInt();
-        	if(studentSelection < 1 || studentSelection > students.size()/3) {
-        		while(studentSelection < 1 || studentSelection > students.size()/3) {
+        	if(studentSelection < 0 || studentSelection > roster.size()) {
+        		while(studentSelection < 0 || studentSelection > roster.size()) {
         			System.out.println("\nInvalid selection.");
         			System.out.println("\nChoose a student.\n");
-                	for(int i = 0, x = 1; i < students.size(); i = i + 3) {
-                		System.out.println("[" + (x) + "] " + students.get(i+1) + ", " + students.get(i));
-                		x++;
+        			System.out.println("[0] All students.");
+                	for(int i = 0; i < roster.size(); i++) {
+                		System.out.println("[" + (i+1) + "] " + roster.get(i).lastName() + ", " + roster.get(i).firstName());
                 	}
                 	System.out.print("\n::: ");
                 	studentSelection = in.nextInt();
         		}
         	}
-        	String studentLastName = studentLastNames.get(studentSelection-1);
-        	String studentFirstName = studentsFirstNames.get(studentSelection-1);
+        	if(studentSelection == 0) {
+        		enterGrades(courseId, markingPeriod, title, roster);
+        		return;
+        	}
+        	RosterEntry student = roster.get(studentSelection-1);
+        	String studentLastName = student.lastName();
+        	String studentFirstName = student.firstName();
         	int rows = PowerSchool.assignmentGradesRows();
         	System.out.println("\nAssignment: " + title + " (" + PowerSchool.getPointValue(title) + " pts)");
         	System.out.println("Student: " + studentLastName + ", " + studentFirstName);
         	int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
-        	int studentId = Integer.parseInt(studentIds.get(studentSelection-1));
+        	int studentId = student.studentId();
         	if(rows == 0) {
         		System.out.println("Current Grade: --");
         	} else {
@@ -772,106 +876,97 @@ public class Application {
         			PowerSchool.updateAssignmentGrade(courseId, assignmentId, studentId, pointsEarned);
             		System.out.println("\nSuccesfully entered grade.\n");
         		}
-        		ArrayList<Integer> assignmentIds = PowerSchool.getAssignmentIdByMP(markingPeriod);
-        		ArrayList<Double> grades = new ArrayList<Double>();
-        		
-        		for(int i = 0; i < assignmentIds.size(); i++) {
-        			grades.addAll(PowerSchool.getGrades(courseId, assignmentIds.get(i),studentId));
-        		}
-        		ArrayList<Double> percent = new ArrayList<Double>();
-        		for(int i = 0; i < grades.size(); i+=2) {
-        			percent.add((grades.get(i)/grades.get(i+1))*100);
-        		}
-        		double total = 0;
-        		for(int i = 0; i < percent.size(); i++) {
-        			total += percent.get(i);
-        		}
-        		double average = total/percent.size();      		
-        		switch (markingPeriod) {
-                case 1: PowerSchool.updateCourseGradesMP1(courseId, studentId, average); break;
-                case 2: PowerSchool.updateCourseGradesMP2(courseId, studentId, average); break;
-                case 3: PowerSchool.updateCourseGradesMP3(courseId, studentId, average); break;
-                case 4: PowerSchool.updateCourseGradesMP4(courseId, studentId, average); break;
-                case 5: PowerSchool.updateCourseGradesMidterm(courseId, studentId, average); break;
-                case 6: PowerSchool.updateCourseGradesFinal(courseId, studentId, average); break;
-                default: System.out.println("\nInvalid selection.\n"); break;
-            	}
-        	}
-        	ArrayList<Double> grades = new ArrayList<Double>();
-        	if(PowerSchool.getMP1Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP1Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP2Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP2Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP3Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP3Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP4Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP4Grade(courseId, studentId));
         	}
-        	if(PowerSchool.getMidtermGrade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMidtermGrade(courseId, studentId));
-        	}
-
-        	double grade = Utils.getGrade(grades);
-        	PowerSchool.updateCourseGrade(courseId, studentId, grade);
-        	PowerSchool.getCourseGrades(studentId);
-        	
-        	ArrayList<Object> courseGrades = PowerSchool.getCourseGrades(studentId);
-        	ArrayList<Double> fourScale = new ArrayList<Double>();
-        	for(int i = 0; i < courseGrades.size(); i++) {
-        		if((Double) courseGrades.get(i) == -1.0) {
-        			
-        		} else if ((Double) courseGrades.get(i) >= 93 && (Double) courseGrades.get(i) <= 100) {
-        			fourScale.add(4.0);
-        		} else if ((Double) courseGrades.get(i) >= 90 && (Double) courseGrades.get(i) <= 92) {
-        			fourScale.add(3.7);
-        		} else if ((Double) courseGrades.get(i) >= 87 && (Double) courseGrades.get(i) <= 89) {
-        			fourScale.add(3.3);
-        		} else if ((Double) courseGrades.get(i) >= 83 && (Double) courseGrades.get(i) <= 86) {
-        			fourScale.add(3.0);
-        		} else if ((Double) courseGrades.get(i) >= 80 && (Double) courseGrades.get(i) <= 82) {
-        			fourScale.add(2.7);
-        		} else if ((Double) courseGrades.get(i) >= 77 && (Double) courseGrades.get(i) <= 79) {
-        			fourScale.add(2.3);
-        		} else if ((Double) courseGrades.get(i) >= 73 && (Double) courseGrades.get(i) <= 76) {
-        			fourScale.add(2.0);
-        		} else if ((Double) courseGrades.get(i) >= 70 && (Double) courseGrades.get(i) <= 72) {
-        			fourScale.add(1.7);
-        		} else if ((Double) courseGrades.get(i) >= 67 && (Double) courseGrades.get(i) <= 69) {
-        			fourScale.add(1.3);
-        		} else if ((Double) courseGrades.get(i) >= 65 && (Double) courseGrades.get(i) <= 66) {
-        			fourScale.add(1.0);
-        		} else if ((Double) courseGrades.get(i) > 65) {
-        			fourScale.add(0.0);
-        		}
-        	}
-        	ArrayList<Integer> courseIds = PowerSchool.getCourseIds(studentId);
-        	ArrayList<Integer> creditHours = PowerSchool.getCreditHours(courseIds);
-        	int totalGradePoints = 0;
-        	int hours = 0;
-        	for(int i = 0; i < fourScale.size(); i++) {
-        		totalGradePoints += fourScale.get(i)*creditHours.get(i);
-        		hours += creditHours.get(i);
-        	}
-        	double gpa = (double) (totalGradePoints)/ (double) hours;
-        	double roundedGpa = Math.round(gpa * 100.0) / 100.0;
-        	PowerSchool.updateGPA(roundedGpa, studentId);
         	hasAssignment = false;
     	}
     }
     
+    /*
+     * Enters grades for every student in a course on one assignment, then saves them
+     * together in a single transaction. Leaving a grade blank skips that student.
+     */
+    
+    private void enterGrades(int courseId, int markingPeriod, String title, ArrayList<RosterEntry> roster) {
+    	int pointValue = PowerSchool.getPointValue(courseId, markingPeriod, title);
+    	int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
+    	HashMap<Integer, Double> currentGrades = PowerSchool.getAssignmentGrades(courseId, assignmentId);
+    	LinkedHashMap<Integer, Double> grades = new LinkedHashMap<Integer, Double>();
+    	
+    	in.nextLine();
+    	System.out.println("\nAssignment: " + title + " (" + pointValue + " pts)");
+    	System.out.println("Enter each student's new grade, or leave it blank to skip the student.\n");
+    	for(RosterEntry student : roster) {
+    		Double currentGrade = currentGrades.get(student.studentId());
+    		String prompt = student.lastName() + ", " + student.firstName() + " (Current Grade: " + (currentGrade == null ? "--" : currentGrade) + "): ";
+    		
+    		while(true) {
+    			System.out.print(prompt);
+    			String input = in.nextLine().trim();
+    			
+    			if(input.isEmpty()) {
+    				break;
+    			}
+    			try {
+    				double pointsEarned = Double.parseDouble(input);
+    				
+    				if(pointsEarned >= 0 && pointsEarned <= pointValue) {
+    					grades.put(student.studentId(), pointsEarned);
+    					break;
+    				}
+    			} catch (NumberFormatException e) {
+    				// fall through to the retry message
+    			}
+    			System.out.println("Choose a grade between 0 and the possible number of points.");
+    		}
+    	}
+    	
+    	if(grades.isEmpty()) {
+    		System.out.println("\nNo grades entered.\n");
+    		return;
+    	}
+    	
+    	String wantTo = "you want to enter these grades?";
+    	System.out.print("\nAre you sure you want to enter these grades? (y/n) ");
+    	String yesNo = in.nextLine();
+    	yesNo = yesNo.toLowerCase();
+    	int checked = checkYesNo(yesNo, wantTo);
+    	
+    	if(checked == -1) {
+    		System.out.println("");
+    	} else if (checked == 1) {
+    		if(PowerSchool.addAssignmentGrades(courseId, assignmentId, pointValue, grades) == -1) {
+    			System.out.println("\nUnable to enter grades.\n");
+    		} else {
+    			System.out.println("\nSuccesfully entered " + grades.size() + " grades.\n");
+    		}
+    	}
+    }
+    
+    /**
+     * Imports assignment grades from a CSV file (course_no, assignment title, student
+     * ID or username, points) for courses in the teacher's department.
+     */
+    
+    public void importGrades() {
+    	in.nextLine();
+    	System.out.print("\nCSV file: ");
+    	String file = in.nextLine().trim();
+    	
+    	if(file.isEmpty()) {
+    		System.out.println("");
+    		return;
+    	}
+    	
+    	System.out.println("");
+    	GradeImporter.Summary summary = PowerSchool.importGrades(Paths.get(file), ((Teacher) activeUser()).getDepartmentId(), System.out);
+    	
+    	if(summary == null) {
+    		System.out.println("\nUnable to import grades.\n");
+    	} else {
+    		System.out.println("\n" + summary + ".\n");
+    	}
+    }
+    
     public void message() {
     	System.out.println("         ________");
     	System.out.println("       /          \\");
@@ -905,40 +1000,37 @@ public class Application {
     }
     
     public void courseGrades() {
-    	int studentId = PowerSchool.getStudentIdByUserId(activeUser);
-    	ArrayList<Integer> courseIds = PowerSchool.getCourseId(studentId);
-    	ArrayList<String> courses = PowerSchool.getCourseName(activeUser, courseIds);
-    	ArrayList<String> courseGrades = PowerSchool.getCourseGrade(PowerSchool.getStudentIdByUserId(activeUser), courseIds);
+    	ArrayList<TranscriptEntry> transcript = PowerSchool.getTranscript(((Student) activeUser()).getStudentId());
     	System.out.println("");
     	
-    	for(int i = 0; i <= courseGrades.size()-1; i++) {
-    		System.out.println((i + 1) + ". " + courses.get(i) + " / " + courseGrades.get(i));
+    	for(int i = 0; i <= transcript.size()-1; i++) {
+    		Double grade = transcript.get(i).grade();
+    		System.out.println((i + 1) + ". " + transcript.get(i).title() + " / " + (grade == null ? "--" : grade));
     	}
     	System.out.println("");
     }
     
     public void assignment() {
     	System.out.println("\nChoose a course.\n");
-    	int studentId = PowerSchool.getStudentIdByUserId(activeUser);
-    	ArrayList<Integer> courseIds = PowerSchool.getCourseId(studentId);
-    	ArrayList<String> courses = PowerSchool.getCourseNumber(activeUser, courseIds);
-    	for(int i = 0; i <= courses.size()-1; i++) {
-    		System.out.println("[" + (i + 1) + "] " + courses.get(i));
+    	int studentId = ((Student) activeUser()).getStudentId();
+    	ArrayList<TranscriptEntry> transcript = PowerSchool.getTranscript(studentId);
+    	for(int i = 0; i <= transcript.size()-1; i++) {
+    		System.out.println("[" + (i + 1) + "] " + transcript.get(i).courseNo());
     	}
     	System.out.print("\n::: ");
     	int courseSelection = in.nextInt();
-    	if(courseSelection < 1 || courseSelection > courses.size()) {
-    		while(courseSelection < 1 || courseSelection > courses.size()) {
+    	if(courseSelection < 1 || courseSelection > transcript.size()) {
+    		while(courseSelection < 1 || courseSelection > transcript.size()) {
     			System.out.println("\nInvalid selection.\n");
     			System.out.println("Choose a course.\n");
-    			for(int i = 0; i <= courses.size()-1; i++) {
-    	    		System.out.println("[" + (i + 1) + "] " + courses.get(i));
+    			for(int i = 0; i <= transcript.size()-1; i++) {
+    	    		System.out.println("[" + (i + 1) + "] " + transcript.get(i).courseNo());
     	    	}
     	    	System.out.print("\n::: ");
     	    	courseSelection = in.nextInt();
     		}
     	}
-    	int courseId = courseIds.get(courseSelection-1);
+    	int courseId = transcript.get(courseSelection-1).courseId();
     	printMarkingPeriods();
     	int markingPeriod = in.nextInt();
     	if(markingPeriod < 1 || markingPeriod > 6) {
@@ -954,16 +1046,22 @@ public class Application {
     		System.out.println("\nThere are no assignments in this class and marking period.\n");
     	} else {
     		
+    		// each assignment's lookups are independent, so they all run at once
+    		
+    		AsyncPowerSchool async = AsyncPowerSchool.shared();
+    		ArrayList<CompletableFuture<String>> lines = new ArrayList<CompletableFuture<String>>();
+    		for(String title : titles) {
+    			CompletableFuture<String> currentGrade = async.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod)
+    				.thenCompose(assignmentId -> async.previousGrade(courseId, assignmentId, studentId))
+    				.thenApply(points -> points == -1 ? "--" : String.valueOf(points));
+    			
+    			lines.add(currentGrade.thenCombine(async.getPointValue(title),
+    				(grade, pointValue) -> title + " / " + grade + " (out of " + pointValue + " pts)"));
+    		}
+    		
     		System.out.println("");
-    		String currentGrade = "";
-    		for(int i = 0; i <= titles.size()-1; i++) {
-    			int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(titles.get(i), courseId, markingPeriod);
-    			if(PowerSchool.previousGrade(courseId, assignmentId, studentId) == -1) {
-        			currentGrade = "--";
-        		} else {
-        			currentGrade = String.valueOf(PowerSchool.previousGrade(courseId, assignmentId, studentId));
-        		}
-    			System.out.println((i + 1) + ". " + titles.get(i) + " / " + currentGrade + " (out of " + PowerSchool.getPointValue(titles.get(i)) + " pts)");
+    		for(int i = 0; i <= lines.size()-1; i++) {
+    			System.out.println((i + 1) + ". " + lines.get(i).join());
         	}
         	System.out.println("");
     	}
@@ -983,9 +1081,31 @@ public class Application {
      */
 
     public boolean login(String username, String password) {
-        activeUser = PowerSchool.login(username, password);
+        session = sessions.login(username, password);
 
-        return activeUser != null;
+        return session != null;
+    }
+
+    /*
+     * Retrieves the logged-in user, or null if no one is logged in.
+     */
+
+    private User activeUser() {
+        return session == null ? null : session.getUser();
+    }
+
+    /*
+     * Determines whether the session is still open, ending it if it has been idle too
+     * long. The menus check this before each choice.
+     */
+
+    private boolean isLoggedIn() {
+        if (session != null && sessions.get(session.getToken()) == null) {
+            System.out.println("\nYour session has expired. Please log in again.");
+            session = null;
+        }
+
+        return session != null;
     }
 
     /**
@@ -995,7 +1115,7 @@ public class Application {
      */
 
     public boolean isFirstLogin() {
-        return activeUser.getLastLogin().equals("0000-00-00 00:00:00.000");
+        return activeUser().getLastLogin().equals("0000-00-00 00:00:00.000");
     }
     
     /*
@@ -1011,6 +1131,8 @@ public class Application {
         
         System.out.println("Encountered unrecoverable error. Shutting down...\n");
         System.out.println(e.getMessage());
+        
+        PowerSchool.shutdown();
                 
         System.out.println("\nGoodbye!");
         System.exit(0);
@@ -1034,6 +1156,7 @@ public class Application {
     		if (in != null) {
                 in.close();
             }
+            PowerSchool.shutdown();
             
             System.out.println("\nGoodbye!");
             System.exit(0);
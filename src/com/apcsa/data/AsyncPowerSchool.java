@@ -0,0 +1,407 @@
+package com.apcsa.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import com.apcsa.model.RosterEntry;
+import com.apcsa.model.StudentSummary;
+import com.apcsa.model.TeacherSummary;
+import com.apcsa.model.TranscriptEntry;
+import com.apcsa.model.User;
+import com.apcsa.server.VirtualThreads;
+
+/**
+ * Non-blocking versions of the PowerSchool data methods. Each method runs its
+ * PowerSchool counterpart on the facade's executor and returns a future, so a screen
+ * can start its independent lookups together and combine the results. Results and
+ * failure values (-1, null, empty lists) are exactly those of the blocking methods.
+ * Concurrency against the database is still bounded by the connection pool; writes
+ * are still serialized by the writer thread.
+ */
+
+public class AsyncPowerSchool {
+
+    private static volatile AsyncPowerSchool shared;
+
+    private final Executor executor;
+
+    /**
+     * Creates an instance of the AsyncPowerSchool class.
+     *
+     * @param executor the executor the blocking calls run on
+     */
+
+    public AsyncPowerSchool(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieves the shared facade. Its executor is chosen by the powerschool.async.threads
+     * system property: 0 (the default) starts a virtual thread per call; any other
+     * value is the size of a fixed pool of daemon threads.
+     *
+     * @return the shared facade
+     */
+
+    public static AsyncPowerSchool shared() {
+        AsyncPowerSchool facade = shared;
+
+        if (facade == null) {
+            synchronized (AsyncPowerSchool.class) {
+                if (shared == null) {
+                    shared = new AsyncPowerSchool(newExecutor(Integer.getInteger("powerschool.async.threads", 0)));
+                }
+                facade = shared;
+            }
+        }
+
+        return facade;
+    }
+
+    /**
+     * Creates an executor for a facade.
+     *
+     * @param threads the number of threads (0 for a virtual thread per call)
+     * @return the executor
+     */
+
+    public static ExecutorService newExecutor(int threads) {
+        if (threads <= 0) {
+            return VirtualThreads.newPerTaskExecutor("powerschool-async");
+        }
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "powerschool-async");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    ////////////////////////////// QUERIES /////////////////////////////////////////////
+
+    /**
+     * @see PowerSchool#login(String, String)
+     */
+
+    public CompletableFuture<User> login(String username, String password) {
+        return supply(() -> PowerSchool.login(username, password));
+    }
+
+    /**
+     * @see PowerSchool#getAdministrator(User)
+     */
+
+    public CompletableFuture<User> getAdministrator(User user) {
+        return supply(() -> PowerSchool.getAdministrator(user));
+    }
+
+    /**
+     * @see PowerSchool#getTeacher(User)
+     */
+
+    public CompletableFuture<User> getTeacher(User user) {
+        return supply(() -> PowerSchool.getTeacher(user));
+    }
+
+    /**
+     * @see PowerSchool#getStudent(User)
+     */
+
+    public CompletableFuture<User> getStudent(User user) {
+        return supply(() -> PowerSchool.getStudent(user));
+    }
+
+    /**
+     * @see PowerSchool#getFirstName(User)
+     */
+
+    public CompletableFuture<String> getFirstName(User activeUser) {
+        return supply(() -> PowerSchool.getFirstName(activeUser));
+    }
+
+    /**
+     * @see PowerSchool#getTranscript(int)
+     */
+
+    public CompletableFuture<ArrayList<TranscriptEntry>> getTranscript(int studentId) {
+        return supply(() -> PowerSchool.getTranscript(studentId));
+    }
+
+    /**
+     * @see PowerSchool#getAssignmentTitle(int, int)
+     */
+
+    public CompletableFuture<ArrayList<String>> getAssignmentTitle(int courseId, int markingPeriod) {
+        return supply(() -> PowerSchool.getAssignmentTitle(courseId, markingPeriod));
+    }
+
+    /**
+     * @see PowerSchool#getPassword(User, String)
+     */
+
+    public CompletableFuture<String> getPassword(User activeUser, String currentPassword) {
+        return supply(() -> PowerSchool.getPassword(activeUser, currentPassword));
+    }
+
+    /**
+     * @see PowerSchool#getCourses(int)
+     */
+
+    public CompletableFuture<ArrayList<String>> getCourses(int departmentId) {
+        return supply(() -> PowerSchool.getCourses(departmentId));
+    }
+
+    /**
+     * @see PowerSchool#getCourseIdFromCourseNo(String)
+     */
+
+    public CompletableFuture<Integer> getCourseIdFromCourseNo(String courseNo) {
+        return supply(() -> PowerSchool.getCourseIdFromCourseNo(courseNo));
+    }
+
+    /**
+     * @see PowerSchool#getAssignments(int, int)
+     */
+
+    public CompletableFuture<ArrayList<String>> getAssignments(int courseId, int markingPeriod) {
+        return supply(() -> PowerSchool.getAssignments(courseId, markingPeriod));
+    }
+
+    /**
+     * @see PowerSchool#getPointValue(String)
+     */
+
+    public CompletableFuture<Integer> getPointValue(String title) {
+        return supply(() -> PowerSchool.getPointValue(title));
+    }
+
+    /**
+     * @see PowerSchool#getAllDepartmentTitles()
+     */
+
+    public CompletableFuture<ArrayList<String>> getAllDepartmentTitles() {
+        return supply(() -> PowerSchool.getAllDepartmentTitles());
+    }
+
+    /**
+     * @see PowerSchool#getAllCourses()
+     */
+
+    public CompletableFuture<ArrayList<String>> getAllCourses() {
+        return supply(() -> PowerSchool.getAllCourses());
+    }
+
+    /**
+     * @see PowerSchool#getAssignmentGrades(int, int)
+     */
+
+    public CompletableFuture<HashMap<Integer, Double>> getAssignmentGrades(int courseId, int assignmentId) {
+        return supply(() -> PowerSchool.getAssignmentGrades(courseId, assignmentId));
+    }
+
+    /**
+     * @see PowerSchool#getAssignmentIdFromTitlePlus(String, int, int)
+     */
+
+    public CompletableFuture<Integer> getAssignmentIdFromTitlePlus(String title, int courseId, int markingPeriod) {
+        return supply(() -> PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod));
+    }
+
+    /**
+     * @see PowerSchool#assignmentGradesRows()
+     */
+
+    public CompletableFuture<Integer> assignmentGradesRows() {
+        return supply(() -> PowerSchool.assignmentGradesRows());
+    }
+
+    /**
+     * @see PowerSchool#previousGrade(int, int, int)
+     */
+
+    public CompletableFuture<Integer> previousGrade(int courseId, int assignmentId, int studentId) {
+        return supply(() -> PowerSchool.previousGrade(courseId, assignmentId, studentId));
+    }
+
+    /**
+     * @see PowerSchool#checkGrade(int, int, int)
+     */
+
+    public CompletableFuture<Integer> checkGrade(int courseId, int assignmentId, int studentId) {
+        return supply(() -> PowerSchool.checkGrade(courseId, assignmentId, studentId));
+    }
+
+    /**
+     * @see PowerSchool#getStudentIdByUserId(User)
+     */
+
+    public CompletableFuture<Integer> getStudentIdByUserId(User activeUser) {
+        return supply(() -> PowerSchool.getStudentIdByUserId(activeUser));
+    }
+
+    /**
+     * @see PowerSchool#getTeachers()
+     */
+
+    public CompletableFuture<ArrayList<TeacherSummary>> getTeachers() {
+        return supply(() -> PowerSchool.getTeachers());
+    }
+
+    /**
+     * @see PowerSchool#getTeachersWithDepartmentId(int)
+     */
+
+    public CompletableFuture<ArrayList<TeacherSummary>> getTeachersWithDepartmentId(int departmentId) {
+        return supply(() -> PowerSchool.getTeachersWithDepartmentId(departmentId));
+    }
+
+    /**
+     * @see PowerSchool#getStudents()
+     */
+
+    public CompletableFuture<ArrayList<StudentSummary>> getStudents() {
+        return supply(() -> PowerSchool.getStudents());
+    }
+
+    /**
+     * @see PowerSchool#getStudentsByGrade(int)
+     */
+
+    public CompletableFuture<ArrayList<StudentSummary>> getStudentsByGrade(int gradeLevel) {
+        return supply(() -> PowerSchool.getStudentsByGrade(gradeLevel));
+    }
+
+    /**
+     * @see PowerSchool#getClassRank(int)
+     */
+
+    public CompletableFuture<Integer> getClassRank(int studentId) {
+        return supply(() -> PowerSchool.getClassRank(studentId));
+    }
+
+    /**
+     * @see PowerSchool#getTopStudents(int, int)
+     */
+
+    public CompletableFuture<ArrayList<Integer>> getTopStudents(int gradeLevel, int count) {
+        return supply(() -> PowerSchool.getTopStudents(gradeLevel, count));
+    }
+
+    /**
+     * @see PowerSchool#getRoster(int)
+     */
+
+    public CompletableFuture<ArrayList<RosterEntry>> getRoster(int courseId) {
+        return supply(() -> PowerSchool.getRoster(courseId));
+    }
+
+    /**
+     * @see PowerSchool#getCourseGrades(int)
+     */
+
+    public CompletableFuture<double[]> getCourseGrades(int studentId) {
+        return supply(() -> PowerSchool.getCourseGrades(studentId));
+    }
+
+    ////////////////////////////// WRITES //////////////////////////////////////////////
+
+    /**
+     * @see PowerSchool#updatePassword(String, String)
+     */
+
+    public CompletableFuture<Integer> updatePassword(String username, String newPassword) {
+        return supply(() -> PowerSchool.updatePassword(username, newPassword));
+    }
+
+    /**
+     * @see PowerSchool#updatePasswordAndTime(String)
+     */
+
+    public CompletableFuture<Integer> updatePasswordAndTime(String username) {
+        return supply(() -> PowerSchool.updatePasswordAndTime(username));
+    }
+
+    /**
+     * @see PowerSchool#nextAssignmentId()
+     */
+
+    public CompletableFuture<Integer> nextAssignmentId() {
+        return supply(() -> PowerSchool.nextAssignmentId());
+    }
+
+    /**
+     * @see PowerSchool#addAssignment(int, int, int, int, int, String, int)
+     */
+
+    public CompletableFuture<Integer> addAssignment(int courseId, int assignmentId, int markingPeriod, int isMidterm,
+            int isFinal, String title, int pointValue) {
+
+        return supply(() -> PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue));
+    }
+
+    /**
+     * @see PowerSchool#deleteAssignment(int, int, String)
+     */
+
+    public CompletableFuture<Integer> deleteAssignment(int courseId, int markingPeriod, String title) {
+        return supply(() -> PowerSchool.deleteAssignment(courseId, markingPeriod, title));
+    }
+
+    /**
+     * Queued directly on the writer thread; no executor thread waits for it.
+     *
+     * @see PowerSchool#addAssignmentGrade(int, int, int, double, int, int)
+     */
+
+    public CompletableFuture<Integer> addAssignmentGrade(int courseId, int assignmentId, int studentId,
+            double pointsEarned, int pointsPossible, int isGraded) {
+
+        return PowerSchool.addAssignmentGradeAsync(courseId, assignmentId, studentId, pointsEarned, pointsPossible, isGraded);
+    }
+
+    /**
+     * Queued directly on the writer thread; no executor thread waits for it.
+     *
+     * @see PowerSchool#addAssignmentGrades(int, int, int, Map)
+     */
+
+    public CompletableFuture<Integer> addAssignmentGrades(int courseId, int assignmentId, int pointsPossible,
+            Map<Integer, Double> grades) {
+
+        return PowerSchool.addAssignmentGradesAsync(courseId, assignmentId, pointsPossible, grades);
+    }
+
+    /**
+     * Queued directly on the writer thread; no executor thread waits for it.
+     *
+     * @see PowerSchool#updateAssignmentGrade(int, int, int, double)
+     */
+
+    public CompletableFuture<Integer> updateAssignmentGrade(int courseId, int assignmentId, int studentId,
+            double pointsEarned) {
+
+        return PowerSchool.updateAssignmentGradeAsync(courseId, assignmentId, studentId, pointsEarned);
+    }
+
+    /**
+     * @see PowerSchool#refreshGrades(int, int, int)
+     */
+
+    public CompletableFuture<Integer> refreshGrades(int courseId, int studentId, int markingPeriod) {
+        return supply(() -> PowerSchool.refreshGrades(courseId, studentId, markingPeriod));
+    }
+
+    /*
+     * Runs a blocking call on the executor.
+     */
+
+    private <T> CompletableFuture<T> supply(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+}
@@ -0,0 +1,351 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class ClassRankIndex {
+
+    private static final int BUCKETS = 401;     // GPAs 0.00 through 4.00, in hundredths
+
+    private final HashMap<Integer, Ranking> students = new HashMap<Integer, Ranking>();
+    private final HashMap<Integer, GradeLevel> gradeLevels = new HashMap<Integer, GradeLevel>();
+    private boolean loaded;
+
+    /**
+     * Records a student's current GPA, reading it (and the student's grade level)
+     * from the database. Ranks are recomputed in memory; call flush to write the ranks
+     * that changed back to the students table.
+     *
+     * @param conn the current database connection (and transaction)
+     * @param studentId the student's ID
+     * @throws SQLException
+     */
+
+    public synchronized void update(Connection conn, int studentId) throws SQLException {
+        if (!loaded) {
+            load(conn);
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_RANKING)) {
+            stmt.setInt(1, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    put(studentId, rs.getInt("grade_level"), rs.getDouble("gpa"), -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a student's class rank: one more than the number of students in the
+     * same grade level with a higher GPA (students with equal GPAs share a rank).
+     *
+     * @param conn a database connection, used to build the index on first use
+     * @param studentId the student's ID
+     * @return the class rank (0 if the student has no GPA or does not exist)
+     * @throws SQLException
+     */
+
+    public synchronized int rank(Connection conn, int studentId) throws SQLException {
+        if (!loaded) {
+            load(conn);
+        }
+
+        Ranking ranking = students.get(studentId);
+
+        return ranking == null ? 0 : rank(ranking);
+    }
+
+    /**
+     * Retrieves the highest-ranked students in a grade level.
+     *
+     * @param conn a database connection, used to build the index on first use
+     * @param gradeLevel the grade level (9 through 12)
+     * @param count the maximum number of students to return
+     * @return the students' IDs, highest GPA first
+     * @throws SQLException
+     */
+
+    public synchronized ArrayList<Integer> top(Connection conn, int gradeLevel, int count) throws SQLException {
+        if (!loaded) {
+            load(conn);
+        }
+
+        ArrayList<Integer> studentIds = new ArrayList<Integer>();
+        GradeLevel level = gradeLevels.get(gradeLevel);
+
+        if (level != null && count > 0) {
+            int last = level.find(Math.min(count, level.size()));
+
+            for (int bucket = BUCKETS - 1; bucket >= last && studentIds.size() < count; bucket--) {
+                for (int studentId : level.bucket(bucket)) {
+                    if (studentIds.size() < count) {
+                        studentIds.add(studentId);
+                    }
+                }
+            }
+        }
+
+        return studentIds;
+    }
+
+    /**
+     * Writes every class rank that changed since the last flush to the students
+     * table, in a single batch.
+     *
+     * @param conn the current database connection (and transaction)
+     * @return the number of ranks written
+     * @throws SQLException
+     */
+
+    public synchronized int flush(Connection conn) throws SQLException {
+        if (!loaded) {
+            load(conn);
+        }
+
+        ArrayList<Ranking> changed = new ArrayList<Ranking>();
+
+        for (GradeLevel level : gradeLevels.values()) {
+            for (int studentId : level.moved) {
+                collect(students.get(studentId), changed);
+            }
+            for (int bucket = 0; bucket <= level.dirtyHigh; bucket++) {
+                for (int studentId : level.bucket(bucket)) {
+                    if (!level.moved.contains(studentId)) {
+                        collect(students.get(studentId), changed);
+                    }
+                }
+            }
+
+            level.moved.clear();
+            level.dirtyHigh = -1;
+        }
+
+        if (changed.isEmpty()) {
+            return 0;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_CLASS_RANK)) {
+            for (Ranking ranking : changed) {
+                stmt.setInt(1, ranking.pending);
+                stmt.setInt(2, ranking.studentId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        for (Ranking ranking : changed) {
+            ranking.written = ranking.pending;
+        }
+
+        return changed.size();
+    }
+
+    /**
+     * Discards the index (e.g., after a transaction that updated it was rolled back).
+     * It is rebuilt from the database on next use.
+     */
+
+    public synchronized void invalidate() {
+        students.clear();
+        gradeLevels.clear();
+        loaded = false;
+    }
+
+    /*
+     * Builds the index from every student's GPA. Ranks that disagree with the stored
+     * class_rank are written on the next flush.
+     */
+
+    private void load(Connection conn) throws SQLException {
+        invalidate();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_RANKINGS);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                put(rs.getInt("student_id"), rs.getInt("grade_level"), rs.getDouble("gpa"), rs.getInt("class_rank"));
+            }
+        }
+        loaded = true;
+    }
+
+    /*
+     * Moves a student into the bucket for their GPA.
+     */
+
+    private void put(int studentId, int gradeLevel, double gpa, int written) {
+        Ranking ranking = students.get(studentId);
+        int bucket = gpa < 0 ? -1 : (int) Math.min(BUCKETS - 1, Math.round(gpa * 100));
+
+        if (ranking == null) {
+            ranking = new Ranking(studentId, gradeLevel, -1, written);
+            students.put(studentId, ranking);
+        } else {
+            if (ranking.gradeLevel == gradeLevel && ranking.bucket == bucket) {
+                return;
+            }
+            level(ranking.gradeLevel).remove(ranking);
+        }
+
+        ranking.gradeLevel = gradeLevel;
+        ranking.bucket = bucket;
+        level(gradeLevel).add(ranking);
+    }
+
+    /*
+     * Queues a student's rank for writing if it differs from the stored rank.
+     */
+
+    private void collect(Ranking ranking, ArrayList<Ranking> changed) {
+        if (ranking != null) {
+            ranking.pending = rank(ranking);
+
+            if (ranking.pending != ranking.written) {
+                changed.add(ranking);
+            }
+        }
+    }
+
+    /*
+     * Computes a student's rank from the Fenwick tree of their grade level.
+     */
+
+    private int rank(Ranking ranking) {
+        return ranking.bucket < 0 ? 0 : level(ranking.gradeLevel).countAbove(ranking.bucket) + 1;
+    }
+
+    /*
+     * Retrieves (or creates) the index for a grade level.
+     */
+
+    private GradeLevel level(int gradeLevel) {
+        GradeLevel level = gradeLevels.get(gradeLevel);
+
+        if (level == null) {
+            level = new GradeLevel();
+            gradeLevels.put(gradeLevel, level);
+        }
+
+        return level;
+    }
+
+    /*
+     * A student's position in the index.
+     */
+
+    private static class Ranking {
+
+        private final int studentId;
+        private int gradeLevel;
+        private int bucket;     // -1 if the student has no GPA
+        private int written;    // the class_rank currently stored
+        private int pending;
+
+        Ranking(int studentId, int gradeLevel, int bucket, int written) {
+            this.studentId = studentId;
+            this.gradeLevel = gradeLevel;
+            this.bucket = bucket;
+            this.written = written;
+        }
+    }
+
+    /*
+     * The students in one grade level, bucketed by GPA. The Fenwick tree counts
+     * students per bucket, in descending GPA order, so the number of students with a
+     * higher GPA is a prefix sum. Students who moved, and the buckets at or below
+     * the highest bucket a student entered or left, are rechecked on the next flush.
+     */
+
+    private static class GradeLevel {
+
+        private final int[] tree = new int[BUCKETS + 1];
+        private final ArrayList<HashSet<Integer>> buckets = new ArrayList<HashSet<Integer>>();
+        private final HashSet<Integer> moved = new HashSet<Integer>();
+        private int size;
+        private int dirtyHigh = -1;
+
+        GradeLevel() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.add(new HashSet<Integer>());
+            }
+        }
+
+        void add(Ranking ranking) {
+            change(ranking, 1);
+        }
+
+        void remove(Ranking ranking) {
+            change(ranking, -1);
+        }
+
+        int size() {
+            return size;
+        }
+
+        HashSet<Integer> bucket(int bucket) {
+            return buckets.get(bucket);
+        }
+
+        /*
+         * Counts the students whose GPA falls in a higher bucket.
+         */
+
+        int countAbove(int bucket) {
+            int count = 0;
+
+            for (int i = BUCKETS - 1 - bucket; i > 0; i -= i & -i) {
+                count += tree[i];
+            }
+
+            return count;
+        }
+
+        /*
+         * Finds the bucket holding the k-th highest GPA (1-based).
+         */
+
+        int find(int k) {
+            int position = 0;
+
+            for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+                if (position + step <= BUCKETS && tree[position + step] < k) {
+                    position += step;
+                    k -= tree[position];
+                }
+            }
+
+            return BUCKETS - 1 - position;
+        }
+
+        private void change(Ranking ranking, int delta) {
+            moved.add(ranking.studentId);
+
+            if (ranking.bucket < 0) {
+                return;     // students without a GPA do not affect anyone else's rank
+            }
+
+            if (delta > 0) {
+                buckets.get(ranking.bucket).add(ranking.studentId);
+            } else {
+                buckets.get(ranking.bucket).remove(ranking.studentId);
+            }
+            size += delta;
+
+            for (int i = BUCKETS - ranking.bucket; i <= BUCKETS; i += i & -i) {
+                tree[i] += delta;
+            }
+
+            // every student in a lower bucket gains or loses one place
+
+            dirtyHigh = Math.max(dirtyHigh, ranking.bucket - 1);
+        }
+    }
+}
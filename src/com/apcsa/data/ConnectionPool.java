@@ -0,0 +1,358 @@
+package com.apcsa.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool {
+
+    private static final boolean TRACE_LEAKS = Boolean.getBoolean("powerschool.pool.traceLeaks");
+
+    private final String url;
+    private final PragmaProfile profile;
+    private final int maxSize;
+    private final long borrowTimeout;
+    private final long leakThreshold;
+    private final long validationInterval;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle;
+    private final Set<PooledConnection> borrowed;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates an instance of the ConnectionPool class.
+     *
+     * @param url the JDBC url used to open physical connections
+     * @param profile the pragmas applied to each newly opened connection
+     * @param maxSize the maximum number of open connections (0 disables pooling)
+     * @param borrowTimeout how long (in milliseconds) to wait for a free connection
+     * @param leakThreshold how long (in milliseconds) a connection may be held before it is reported as leaked
+     * @param validationInterval how long (in milliseconds) a connection may sit idle before it is validated
+     */
+
+    public ConnectionPool(String url, PragmaProfile profile, int maxSize, long borrowTimeout,
+            long leakThreshold, long validationInterval) {
+
+        this.url = url;
+        this.profile = profile;
+        this.maxSize = Math.max(0, maxSize);
+        this.borrowTimeout = borrowTimeout;
+        this.leakThreshold = leakThreshold;
+        this.validationInterval = validationInterval;
+
+        this.permits = new Semaphore(this.maxSize == 0 ? Integer.MAX_VALUE : this.maxSize, true);
+        this.idle = new LinkedBlockingDeque<PooledConnection>();
+        this.borrowed = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Creates a connection pool configured from system properties.
+     *
+     * @param url the JDBC url used to open physical connections
+     * @return a connection pool
+     */
+
+    public static ConnectionPool fromSystemProperties(String url) {
+        return fromSystemProperties(url, PragmaProfile.fromSystemProperties());
+    }
+
+    /**
+     * Creates a connection pool configured from system properties, with the given
+     * pragmas applied to its connections.
+     *
+     * @param url the JDBC url used to open physical connections
+     * @param profile the pragmas applied to each newly opened connection
+     * @return a connection pool
+     */
+
+    public static ConnectionPool fromSystemProperties(String url, PragmaProfile profile) {
+        return new ConnectionPool(url,
+            profile,
+            Integer.getInteger("powerschool.pool.size", 4),
+            Long.getLong("powerschool.pool.timeout", 30000L),
+            Long.getLong("powerschool.pool.leakThreshold", 60000L),
+            Long.getLong("powerschool.pool.validationInterval", 5000L)
+        );
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection hands it
+     * back to the pool rather than closing the underlying database connection.
+     *
+     * @return a database Connection object
+     * @throws SQLException if no connection could be obtained
+     */
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+
+        reportLeaks();
+
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection (pool size: " + maxSize + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = nextIdleConnection();
+
+            if (pooled == null) {
+                pooled = new PooledConnection(open());
+                if (maxSize > 0) {
+                    pooled.statements.warmUp();
+                }
+            }
+
+            pooled.borrow();
+            borrowed.add(pooled);
+
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the pragma profile applied to each connection
+     */
+
+    public PragmaProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the maximum number of open connections
+     */
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of connections currently borrowed from the pool
+     */
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return the number of open connections waiting to be borrowed
+     */
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Prints a warning for each connection that has been held longer than the leak
+     * threshold. Each leak is reported once. The borrowing stack trace is included
+     * when powerschool.pool.traceLeaks is true (capturing it costs every borrow).
+     */
+
+    public void reportLeaks() {
+        long now = System.currentTimeMillis();
+
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                pooled.leakReported = true;
+
+                System.err.println("Warning: Possible connection leak (held for " + (now - pooled.borrowedAt) + " ms).");
+                if (pooled.borrowedBy != null) {
+                    pooled.borrowedBy.printStackTrace();
+                } else {
+                    System.err.println("Run with -Dpowerschool.pool.traceLeaks=true to see where it was borrowed.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection and refuses further requests. Connections that
+     * are still borrowed are closed when they are returned.
+     */
+
+    public void shutdown() {
+        closed = true;
+        reportLeaks();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.discard();
+        }
+    }
+
+    /*
+     * Opens a new physical connection and applies the pragma profile.
+     *
+     * @return a database Connection object
+     * @throws SQLException
+     */
+
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+
+        try {
+            profile.apply(conn);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+
+        return conn;
+    }
+
+    /*
+     * Retrieves the most recently used idle connection, validating connections that
+     * have been idle long enough to have gone stale.
+     *
+     * @return an idle connection, or null if a new one needs to be opened
+     */
+
+    private PooledConnection nextIdleConnection() {
+        PooledConnection pooled;
+
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.returnedAt < validationInterval) {
+                return pooled;
+            }
+
+            try {
+                if (pooled.raw.isValid(1)) {
+                    return pooled;
+                }
+            } catch (SQLException e) {
+                // treat as invalid
+            }
+            pooled.discard();
+        }
+
+        return null;
+    }
+
+    /*
+     * Returns a connection to the pool, resetting any transaction state left behind
+     * by the borrower.
+     *
+     * @param pooled the connection being returned
+     */
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+
+        boolean reusable = !closed && maxSize > 0;
+        try {
+            if (pooled.raw.isClosed()) {
+                reusable = false;
+            } else if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.returnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            pooled.discard();
+        }
+        permits.release();
+    }
+
+    /*
+     * A physical connection along with its bookkeeping and the proxy handed to callers.
+     */
+
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection raw;
+        private final Connection proxy;
+        private final StatementCatalog.Cache statements;
+
+        private volatile boolean checkedOut;
+        private volatile boolean leakReported;
+        private volatile long borrowedAt;
+        private volatile long returnedAt;
+        private volatile Throwable borrowedBy;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statements = new StatementCatalog.Cache(raw);
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, this);
+        }
+
+        void borrow() {
+            checkedOut = true;
+            leakReported = false;
+            borrowedAt = System.currentTimeMillis();
+            borrowedBy = TRACE_LEAKS ? new Throwable("Connection borrowed here") : null;
+        }
+
+        void discard() {
+            statements.close();
+            try {
+                raw.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (checkedOut) {
+                    checkedOut = false;
+                    release(this);
+                }
+                return null;
+            case "isClosed":
+                return !checkedOut || raw.isClosed();
+            case "prepareStatement":
+                if (checkedOut && args.length == 1) {
+                    return statements.prepare((String) args[0]);
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnection[" + raw + "]";
+            default:
+                break;
+            }
+
+            if (!checkedOut) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class GpaEngine {
+
+    /**
+     * Converts a course grade to the 4.0 scale.
+     *
+     * @param grade the course grade (0-100)
+     * @return the grade points
+     */
+
+    public static double gradePoints(double grade) {
+        if (grade >= 93) {
+            return 4.0;
+        } else if (grade >= 90) {
+            return 3.7;
+        } else if (grade >= 87) {
+            return 3.3;
+        } else if (grade >= 83) {
+            return 3.0;
+        } else if (grade >= 80) {
+            return 2.7;
+        } else if (grade >= 77) {
+            return 2.3;
+        } else if (grade >= 73) {
+            return 2.0;
+        } else if (grade >= 70) {
+            return 1.7;
+        } else if (grade >= 67) {
+            return 1.3;
+        } else if (grade >= 65) {
+            return 1.0;
+        }
+
+        return 0.0;
+    }
+
+    /**
+     * Applies a change in one course grade to the student's running GPA totals and
+     * rewrites the student's GPA from them. Only the changed course is read, so the
+     * cost does not depend on how many courses the student takes.
+     *
+     * @param conn the current database connection (and transaction)
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @param previous the previous course grade (null if it was not graded)
+     * @param grade the new course grade (null if it is not graded)
+     * @return true if the GPA was rewritten; false if the change did not affect it
+     * @throws SQLException
+     */
+
+    public static boolean applyCourseGrade(Connection conn, int courseId, int studentId, Double previous, Double grade) throws SQLException {
+        double previousPoints = previous == null ? 0 : gradePoints(previous);
+        double points = grade == null ? 0 : gradePoints(grade);
+        int previousGraded = previous == null ? 0 : 1;
+        int graded = grade == null ? 0 : 1;
+
+        if (previousPoints == points && previousGraded == graded) {
+            return false;
+        }
+
+        double creditHours = getCreditHours(conn, courseId);
+
+        try (PreparedStatement insert = conn.prepareStatement(QueryUtils.ADD_GPA_TOTAL);
+             PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_GPA_TOTAL);
+             PreparedStatement gpa = conn.prepareStatement(QueryUtils.UPDATE_GPA)) {
+
+            insert.setInt(1, studentId);
+            insert.executeUpdate();
+
+            update.setDouble(1, (points - previousPoints) * creditHours);
+            update.setDouble(2, (graded - previousGraded) * creditHours);
+            update.setInt(3, studentId);
+            update.executeUpdate();
+
+            gpa.setInt(1, studentId);
+            gpa.executeUpdate();
+        }
+
+        return true;
+    }
+
+    /*
+     * Looks up a course's credit hours.
+     */
+
+    private static double getCreditHours(Connection conn, int courseId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_CREDIT_HOURS)) {
+            stmt.setInt(1, courseId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getDouble("credit_hours") : 0;
+            }
+        }
+    }
+}
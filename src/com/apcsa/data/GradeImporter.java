@@ -0,0 +1,498 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GradeImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("powerschool.importBatchSize", 1000);
+
+    private final Connection conn;
+    private final WriteDispatcher writer;
+    private final int departmentId;
+    private final PrintStream errors;
+    private final int batchSize;
+
+    private final HashMap<String, Course> courses = new HashMap<String, Course>();
+    private final HashMap<String, Assignment> assignments = new HashMap<String, Assignment>();
+    private final HashMap<String, Integer> students = new HashMap<String, Integer>();
+    private final HashMap<Long, Boolean> enrollment = new HashMap<Long, Boolean>();
+
+    private final LinkedHashMap<Assignment, LinkedHashMap<Integer, Double>> pending = new LinkedHashMap<Assignment, LinkedHashMap<Integer, Double>>();
+    private int pendingRows;
+    private int pendingGrades;
+    private long pendingFirstLine;
+    private long pendingLastLine;
+
+    private long rows;
+    private long imported;
+    private long duplicates;
+    private long rejected;
+
+    /**
+     * Creates an instance of the GradeImporter class with the default batch size.
+     *
+     * @param conn the database connection the rows are looked up on
+     * @param writer the dispatcher that each batch is written through
+     * @param departmentId the department whose courses may be imported, or -1 for any
+     * @param errors where per-row errors are reported
+     */
+
+    public GradeImporter(Connection conn, WriteDispatcher writer, int departmentId, PrintStream errors) {
+        this(conn, writer, departmentId, errors, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an instance of the GradeImporter class.
+     *
+     * @param conn the database connection the rows are looked up on
+     * @param writer the dispatcher that each batch is written through
+     * @param departmentId the department whose courses may be imported, or -1 for any
+     * @param errors where per-row errors are reported
+     * @param batchSize the number of rows committed per transaction
+     */
+
+    public GradeImporter(Connection conn, WriteDispatcher writer, int departmentId, PrintStream errors, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+
+        this.conn = conn;
+        this.writer = writer;
+        this.departmentId = departmentId;
+        this.errors = errors;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Streams CSV rows of course_no, assignment title, student (ID or username), and
+     * points earned, and upserts them into assignment_grades. An optional header row
+     * (starting with course_no) is skipped. Only the current batch is held in memory;
+     * each batch is queued as one write on the writer thread, so a failed batch
+     * rejects only its own rows. When a batch has several rows for the same student and
+     * assignment, the last one is written and the others are counted as duplicates.
+     *
+     * @param reader the CSV source
+     * @return a summary of the import
+     * @throws IOException if the source cannot be read
+     * @throws SQLException if a lookup fails
+     */
+
+    public Summary execute(Reader reader) throws IOException, SQLException {
+        long start = System.nanoTime();
+
+        try (PreparedStatement course = conn.prepareStatement(QueryUtils.GET_COURSE_BY_COURSE_NO);
+             PreparedStatement assignment = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_BY_TITLE);
+             PreparedStatement student = conn.prepareStatement(QueryUtils.GET_STUDENT_ID_BY_USERNAME);
+             PreparedStatement enrolled = conn.prepareStatement(QueryUtils.CHECK_ENROLLMENT)) {
+
+            CsvReader csv = new CsvReader(reader);
+            ArrayList<String> fields;
+
+            while ((fields = csv.next()) != null) {
+                long line = csv.line();
+
+                if (line == 1 && !fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("course_no")) {
+                    continue;
+                }
+                if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                    continue;   // blank line
+                }
+
+                rows++;
+                String error = stage(line, fields, course, assignment, student, enrolled);
+
+                if (error != null) {
+                    reject(line, error);
+                } else if (pendingRows >= batchSize) {
+                    commit();
+                }
+            }
+            commit();
+        }
+
+        return new Summary(rows, imported, duplicates, rejected, System.nanoTime() - start);
+    }
+
+    /*
+     * Resolves and validates one row, adding it to the current batch.
+     *
+     * @return an error message, or null if the row was staged
+     */
+
+    private String stage(long line, ArrayList<String> fields, PreparedStatement courseLookup,
+            PreparedStatement assignmentLookup, PreparedStatement studentLookup, PreparedStatement enrolledLookup) throws SQLException {
+
+        if (fields.size() != 4) {
+            return "expected 4 columns but found " + fields.size() + ".";
+        }
+
+        String courseNo = fields.get(0).trim();
+        String title = fields.get(1).trim();
+        String studentKey = fields.get(2).trim();
+        String points = fields.get(3).trim();
+
+        Course course = getCourse(courseLookup, courseNo);
+        if (course == null) {
+            return "unknown course " + courseNo + ".";
+        } else if (departmentId != -1 && course.departmentId != departmentId) {
+            return "course " + courseNo + " is not in your department.";
+        }
+
+        Assignment assignment = getAssignment(assignmentLookup, course, title);
+        if (assignment == null) {
+            return "unknown assignment " + title + " in " + courseNo + ".";
+        } else if (assignment.assignmentId == -1) {
+            return "assignment title " + title + " is used in more than one marking period of " + courseNo + ".";
+        }
+
+        Integer studentId = getStudentId(studentLookup, studentKey);
+        if (studentId == null) {
+            return "unknown student " + studentKey + ".";
+        } else if (!isEnrolled(enrolledLookup, course.courseId, studentId)) {
+            return "student " + studentKey + " is not enrolled in " + courseNo + ".";
+        }
+
+        double pointsEarned;
+        try {
+            pointsEarned = Double.parseDouble(points);
+        } catch (NumberFormatException e) {
+            return "invalid points " + (points.isEmpty() ? "(blank)" : points) + ".";
+        }
+        if (!(pointsEarned >= 0 && pointsEarned <= assignment.pointValue)) {
+            return "points must be between 0 and " + assignment.pointValue + ".";
+        }
+
+        LinkedHashMap<Integer, Double> grades = pending.get(assignment);
+        if (grades == null) {
+            grades = new LinkedHashMap<Integer, Double>();
+            pending.put(assignment, grades);
+        }
+        if (grades.put(studentId, pointsEarned) == null) {     // a later row for the same student wins
+            pendingGrades++;
+        }
+
+        if (pendingRows++ == 0) {
+            pendingFirstLine = line;
+        }
+        pendingLastLine = line;
+
+        return null;
+    }
+
+    /*
+     * Writes the current batch and waits for it to be committed.
+     */
+
+    private void commit() throws SQLException {
+        if (pendingRows == 0) {
+            return;
+        }
+
+        try {
+            writer.call(conn -> {
+                for (Map.Entry<Assignment, LinkedHashMap<Integer, Double>> entry : pending.entrySet()) {
+                    Assignment assignment = entry.getKey();
+
+                    PowerSchool.writeAssignmentGrades(conn, assignment.courseId, assignment.assignmentId,
+                        assignment.markingPeriod, assignment.pointValue, entry.getValue());
+                }
+
+                return PowerSchool.flushClassRanks(conn);
+            });
+
+            imported += pendingGrades;
+            duplicates += pendingRows - pendingGrades;
+        } catch (SQLException | RuntimeException e) {
+            PowerSchool.invalidateClassRanks();
+
+            errors.println("Lines " + pendingFirstLine + "-" + pendingLastLine + ": batch rolled back (" + e.getMessage() + ").");
+            rejected += pendingRows;
+        } finally {
+            pending.clear();
+            pendingRows = 0;
+            pendingGrades = 0;
+        }
+    }
+
+    /*
+     * Reports a rejected row.
+     */
+
+    private void reject(long line, String error) {
+        errors.println("Line " + line + ": " + error);
+        rejected++;
+    }
+
+    /*
+     * Looks up a course by course_no (cached, including misses).
+     */
+
+    private Course getCourse(PreparedStatement stmt, String courseNo) throws SQLException {
+        if (courses.containsKey(courseNo)) {
+            return courses.get(courseNo);
+        }
+
+        Course course = null;
+        stmt.setString(1, courseNo);
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                course = new Course(rs.getInt("course_id"), rs.getInt("department_id"));
+            }
+        }
+        courses.put(courseNo, course);
+
+        return course;
+    }
+
+    /*
+     * Looks up an assignment by course and title (cached, including misses). A title
+     * used in several marking periods resolves to an assignment with an ID of -1.
+     */
+
+    private Assignment getAssignment(PreparedStatement stmt, Course course, String title) throws SQLException {
+        String key = course.courseId + "\u0000" + title;
+
+        if (assignments.containsKey(key)) {
+            return assignments.get(key);
+        }
+
+        Assignment assignment = null;
+        stmt.setInt(1, course.courseId);
+        stmt.setString(2, title);
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                assignment = new Assignment(course.courseId, rs.getInt("assignment_id"),
+                    rs.getInt("marking_period"), rs.getInt("point_value"));
+
+                if (rs.next()) {
+                    assignment = new Assignment(course.courseId, -1, -1, -1);
+                }
+            }
+        }
+        assignments.put(key, assignment);
+
+        return assignment;
+    }
+
+    /*
+     * Resolves a student ID or username (cached, including misses).
+     */
+
+    private Integer getStudentId(PreparedStatement stmt, String key) throws SQLException {
+        if (students.containsKey(key)) {
+            return students.get(key);
+        }
+
+        Integer studentId = null;
+
+        if (!key.isEmpty() && key.chars().allMatch(Character::isDigit) && key.length() < 10) {
+            studentId = Integer.parseInt(key);     // existence is checked with enrollment
+        } else {
+            stmt.setString(1, key);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    studentId = rs.getInt("student_id");
+                }
+            }
+        }
+        students.put(key, studentId);
+
+        return studentId;
+    }
+
+    /*
+     * Checks that a student has a course_grades row for a course (cached).
+     */
+
+    private boolean isEnrolled(PreparedStatement stmt, int courseId, int studentId) throws SQLException {
+        long key = ((long) courseId << 32) | (studentId & 0xffffffffL);
+        Boolean enrolled = enrollment.get(key);
+
+        if (enrolled == null) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                enrolled = rs.next();
+            }
+            enrollment.put(key, enrolled);
+        }
+
+        return enrolled;
+    }
+
+    /**
+     * The outcome of an import.
+     *
+     * @param rows the number of data rows read
+     * @param imported the number of grades written
+     * @param duplicates the number of rows superseded by a later row for the same student and assignment
+     * @param rejected the number of rows rejected (invalid or in a failed batch)
+     * @param elapsedNanos the time taken
+     */
+
+    public record Summary(long rows, long imported, long duplicates, long rejected, long elapsedNanos) {
+
+        /**
+         * @return the rows read per second
+         */
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows read, %d imported, %d duplicates, %d rejected in %.2f s (%.0f rows/s)",
+                rows, imported, duplicates, rejected, elapsedNanos / 1_000_000_000.0, rowsPerSecond());
+        }
+    }
+
+    /*
+     * A course's IDs, as resolved from its course_no.
+     */
+
+    private static class Course {
+
+        private final int courseId;
+        private final int departmentId;
+
+        Course(int courseId, int departmentId) {
+            this.courseId = courseId;
+            this.departmentId = departmentId;
+        }
+    }
+
+    /*
+     * An assignment's IDs and point value, as resolved from its title. Instances are
+     * cached, so identity equality groups a batch's rows by assignment.
+     */
+
+    private static class Assignment {
+
+        private final int courseId;
+        private final int assignmentId;
+        private final int markingPeriod;
+        private final int pointValue;
+
+        Assignment(int courseId, int assignmentId, int markingPeriod, int pointValue) {
+            this.courseId = courseId;
+            this.assignmentId = assignmentId;
+            this.markingPeriod = markingPeriod;
+            this.pointValue = pointValue;
+        }
+    }
+
+    /*
+     * A minimal RFC 4180 reader: comma-separated fields, optionally double-quoted,
+     * with "" for a literal quote and line breaks allowed inside quotes. Reads one
+     * record at a time from the underlying (buffered) reader.
+     */
+
+    private static class CsvReader {
+
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+        private long line = 1;
+        private long recordLine;
+        private int peeked = -2;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /*
+         * @return the line on which the last record started
+         */
+
+        long line() {
+            return recordLine;
+        }
+
+        /*
+         * @return the next record's fields, or null at the end of the input
+         */
+
+        ArrayList<String> next() throws IOException {
+            int c = read();
+
+            if (c == -1) {
+                return null;
+            }
+
+            ArrayList<String> fields = new ArrayList<String>(4);
+            boolean quoted = false;
+            recordLine = line;
+            field.setLength(0);
+
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Line " + recordLine + ": unterminated quoted field.");
+                    } else if (c == '"') {
+                        int n = read();
+
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = n;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int n = read();
+
+                        if (n != '\n') {
+                            peeked = n;
+                        }
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    fields.add(field.toString());
+
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+
+                return c;
+            }
+
+            return reader.read();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+public class GradebookExporter {
+
+    public static final int FETCH_SIZE = Integer.getInteger("powerschool.exportFetchSize", 512);
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The tables that can be exported.
+     */
+
+    public enum Dataset {
+        COURSE_GRADES(QueryUtils.EXPORT_COURSE_GRADES, 4),
+        ASSIGNMENT_GRADES(QueryUtils.EXPORT_ASSIGNMENT_GRADES, 4),
+        STUDENTS(QueryUtils.EXPORT_STUDENTS, 3);
+
+        private final String sql;
+        private final int filters;
+
+        Dataset(String sql, int filters) {
+            this.sql = sql;
+            this.filters = filters;
+        }
+    }
+
+    /**
+     * The output formats: CSV with a header row, or one JSON object per line.
+     */
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * Restricts an export. Null fields match every row. The marking period (1-4 for
+     * MP1-MP4, 5 for the midterm, 6 for the final) keeps course grades graded in that
+     * period and assignment grades from it; it does not apply to students.
+     *
+     * @param courseId the course's ID
+     * @param departmentId the department's ID
+     * @param gradeLevel the students' grade level
+     * @param markingPeriod the marking period
+     */
+
+    public record Filter(Integer courseId, Integer departmentId, Integer gradeLevel, Integer markingPeriod) {
+
+        public static final Filter NONE = new Filter(null, null, null, null);
+    }
+
+    private final Connection conn;
+
+    /**
+     * Creates an instance of the GradebookExporter class.
+     *
+     * @param conn the database connection to read from
+     */
+
+    public GradebookExporter(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Streams a dataset to a channel. Rows are read from a forward-only cursor and
+     * encoded into a fixed-size buffer, so memory use does not depend on the number
+     * of rows. The channel is not closed.
+     *
+     * @param dataset the table to export
+     * @param format the output format
+     * @param filter the rows to include
+     * @param out the destination
+     * @return the number of rows written
+     * @throws SQLException
+     * @throws IOException
+     */
+
+    public long export(Dataset dataset, Format format, Filter filter, WritableByteChannel out) throws SQLException, IOException {
+        Integer[] filters = { filter.courseId(), filter.departmentId(), filter.gradeLevel(), filter.markingPeriod() };
+        ChannelWriter writer = new ChannelWriter(out);
+        long rows = 0;
+
+        try (PreparedStatement stmt = conn.prepareStatement(dataset.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            for (int i = 0; i < dataset.filters; i++) {
+                bind(stmt, i * 2 + 1, filters[i]);
+                bind(stmt, i * 2 + 2, filters[i]);
+            }
+            stmt.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columns = metaData.getColumnCount();
+                String[] names = new String[columns];
+                StringBuilder row = new StringBuilder(256);
+
+                for (int i = 0; i < columns; i++) {
+                    names[i] = metaData.getColumnLabel(i + 1);
+                }
+
+                if (format == Format.CSV) {
+                    for (int i = 0; i < columns; i++) {
+                        if (i > 0) {
+                            row.append(',');
+                        }
+                        appendCsv(row, names[i]);
+                    }
+                    writer.write(row.append('\n'));
+                }
+
+                while (rs.next()) {
+                    row.setLength(0);
+
+                    if (format == Format.CSV) {
+                        for (int i = 0; i < columns; i++) {
+                            if (i > 0) {
+                                row.append(',');
+                            }
+
+                            Object value = rs.getObject(i + 1);
+                            if (value instanceof Number) {
+                                row.append(value);
+                            } else if (value != null) {
+                                appendCsv(row, value.toString());
+                            }
+                        }
+                    } else {
+                        row.append('{');
+                        for (int i = 0; i < columns; i++) {
+                            if (i > 0) {
+                                row.append(',');
+                            }
+                            appendJson(row, names[i]);
+                            row.append(':');
+
+                            Object value = rs.getObject(i + 1);
+                            if (value instanceof Number) {
+                                row.append(value);
+                            } else if (value == null) {
+                                row.append("null");
+                            } else {
+                                appendJson(row, value.toString());
+                            }
+                        }
+                        row.append('}');
+                    }
+                    writer.write(row.append('\n'));
+                    rows++;
+                }
+            }
+        }
+        writer.flush();
+
+        return rows;
+    }
+
+    /*
+     * Binds a nullable filter parameter.
+     */
+
+    private static void bind(PreparedStatement stmt, int index, Integer value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.INTEGER);
+        } else {
+            stmt.setInt(index, value);
+        }
+    }
+
+    /*
+     * Appends a CSV field, quoting it only if it contains a delimiter, quote, or line break.
+     */
+
+    private static void appendCsv(StringBuilder row, String value) {
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    /*
+     * Appends a JSON string literal.
+     */
+
+    private static void appendJson(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"': row.append("\\\""); break;
+                case '\\': row.append("\\\\"); break;
+                case '\n': row.append("\\n"); break;
+                case '\r': row.append("\\r"); break;
+                case '\t': row.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        row.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        row.append(c);
+                    }
+                    break;
+            }
+        }
+        row.append('"');
+    }
+
+    /*
+     * Encodes text as UTF-8 into a direct buffer that is drained to the channel
+     * whenever it fills.
+     */
+
+    private static class ChannelWriter {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+
+            while (encoder.encode(chars, buffer, false) == CoderResult.OVERFLOW) {
+                drain();
+            }
+        }
+
+        void flush() throws IOException {
+            CharBuffer empty = CharBuffer.allocate(0);
+
+            while (encoder.encode(empty, buffer, true) == CoderResult.OVERFLOW) {
+                drain();
+            }
+            while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
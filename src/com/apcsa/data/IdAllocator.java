@@ -0,0 +1,101 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class IdAllocator {
+
+    private final WriteDispatcher writer;
+    private final String sequence;
+    private final int blockSize;
+
+    private long next;
+    private long limit;
+
+    /**
+     * Creates an instance of the IdAllocator class.
+     *
+     * @param writer the dispatcher that reservations are written through
+     * @param sequence the name of the row in the sequences table
+     * @param blockSize the number of ids reserved from the database at a time
+     */
+
+    public IdAllocator(WriteDispatcher writer, String sequence, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1.");
+        }
+
+        this.writer = writer;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Hands out the next id. Ids are served from a block reserved in memory, so the
+     * database is only touched once per block. Ids left in a block when the
+     * application exits are never reused (they become gaps, not duplicates).
+     *
+     * @return the id
+     * @throws SQLException if a new block cannot be reserved
+     */
+
+    public synchronized int nextId() throws SQLException {
+        if (next >= limit) {
+            next = reserve(blockSize);
+            limit = next + blockSize;
+        }
+
+        return (int) next++;
+    }
+
+    /**
+     * Discards the block reserved in memory (e.g., after the sequences table has been
+     * rebuilt), so the next id comes from a freshly reserved block.
+     */
+
+    public synchronized void reset() {
+        next = 0;
+        limit = 0;
+    }
+
+    /**
+     * Reserves a contiguous block of ids directly from the database (e.g., for a bulk
+     * insert). The reservation is written on the writer thread and committed before
+     * this method returns, so it holds even if the caller's own inserts are later
+     * rolled back. It must not be called from a write.
+     *
+     * @param count the number of ids to reserve
+     * @return the first id in the block
+     * @throws SQLException
+     */
+
+    public int reserve(int count) throws SQLException {
+        return writer.call(conn -> reserve(conn, count));
+    }
+
+    /*
+     * Advances the sequence by a block and reads back where the block ends. Runs on
+     * the writer thread, so no other write can advance the sequence in between.
+     */
+
+    private int reserve(Connection conn, int count) throws SQLException {
+        try (PreparedStatement advance = conn.prepareStatement(QueryUtils.ADVANCE_SEQUENCE);
+             PreparedStatement select = conn.prepareStatement(QueryUtils.GET_SEQUENCE_VALUE)) {
+
+            advance.setInt(1, count);
+            advance.setString(2, sequence);
+            if (advance.executeUpdate() != 1) {
+                throw new SQLException("Unknown sequence: " + sequence);
+            }
+
+            select.setString(1, sequence);
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+
+                return (int) (rs.getLong("next_value") - count);
+            }
+        }
+    }
+}
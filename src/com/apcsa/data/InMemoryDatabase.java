@@ -0,0 +1,143 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InMemoryDatabase {
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private final String url;
+    private final Path snapshotOnClose;
+    private final Connection keeper;
+
+    /**
+     * Creates an in-memory database. It lives in SQLite's memdb VFS, so every
+     * connection opened on its url (by the pool and the writer) shares one database
+     * with normal locking, and it exists until close() is called.
+     *
+     * @param name a name for the database (unique within this process)
+     * @param preload a database file to copy in with the backup API (null to start empty)
+     * @param snapshotOnClose where to snapshot the database when it is closed (null for nowhere)
+     * @throws SQLException if the database cannot be created or preloaded
+     */
+
+    public InMemoryDatabase(String name, Path preload, Path snapshotOnClose) throws SQLException {
+        this.url = "jdbc:sqlite:file:/" + name + "?vfs=memdb";
+        this.snapshotOnClose = snapshotOnClose;
+        this.keeper = DriverManager.getConnection(url);     // the database is freed when its last connection closes
+
+        if (preload != null) {
+            try (Statement stmt = keeper.createStatement()) {
+                stmt.executeUpdate("restore from " + quote(preload));
+            } catch (SQLException e) {
+                keeper.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Creates an in-memory database if the powerschool.inMemory system property is
+     * true. powerschool.inMemory.preload names a database file to start from, and
+     * powerschool.inMemory.snapshot names a file to snapshot to at shutdown.
+     *
+     * @return the in-memory database, or null if the disk database should be used
+     * @throws IllegalStateException if the database cannot be created or preloaded
+     */
+
+    public static InMemoryDatabase fromSystemProperties() {
+        if (!Boolean.getBoolean("powerschool.inMemory")) {
+            return null;
+        }
+
+        String preload = System.getProperty("powerschool.inMemory.preload");
+        String snapshot = System.getProperty("powerschool.inMemory.snapshot");
+
+        try {
+            return new InMemoryDatabase("powerschool-" + COUNT.incrementAndGet(),
+                preload == null ? null : Paths.get(preload), snapshot == null ? null : Paths.get(snapshot));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to create in-memory database.", e);
+        }
+    }
+
+    /**
+     * @return the JDBC url connections to this database are opened with
+     */
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Snapshots the database to disk (if configured), then frees it.
+     */
+
+    public void close() {
+        try {
+            if (snapshotOnClose != null) {
+                snapshot(keeper, snapshotOnClose);
+            }
+        } catch (IOException | SQLException e) {
+            System.err.println("Error: Unable to snapshot in-memory database to " + snapshotOnClose + ".");
+            e.printStackTrace();
+        } finally {
+            try {
+                keeper.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Copies a database to a file with the backup API. The copy is a consistent
+     * snapshot, and it is written to a temporary file first, so the target is never
+     * left half-written. Works for disk and in-memory databases alike.
+     *
+     * @param conn a connection to the database
+     * @param file the file to write
+     * @throws IOException if the file cannot be replaced
+     * @throws SQLException if the backup fails
+     */
+
+    public static void snapshot(Connection conn, Path file) throws IOException, SQLException {
+        Path target = file.toAbsolutePath();
+        Path directory = target.getParent();
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("backup to " + quote(temp));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /*
+     * Quotes a file name for the driver's backup and restore commands.
+     */
+
+    private static String quote(Path file) {
+        String name = file.toString();
+
+        if (name.indexOf('"') != -1) {
+            throw new IllegalArgumentException("Unsupported file name: " + name);
+        }
+
+        return "\"" + name + "\"";
+    }
+}
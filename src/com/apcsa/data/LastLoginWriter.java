@@ -0,0 +1,187 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LastLoginWriter {
+
+    private final WriteDispatcher writer;
+    private final long flushInterval;
+    private final ConcurrentHashMap<String, String> pending = new ConcurrentHashMap<String, String>();
+    private final Object flushLock = new Object();
+    private volatile Map<String, String> flushing = Collections.emptyMap();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates an instance of the LastLoginWriter class.
+     *
+     * @param writer the dispatcher that timestamps are written through
+     * @param flushInterval how often (in milliseconds) pending timestamps are written; 0 writes each login synchronously
+     */
+
+    public LastLoginWriter(WriteDispatcher writer, long flushInterval) {
+        this.writer = writer;
+        this.flushInterval = Math.max(0, flushInterval);
+
+        if (this.flushInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "last-login-writer");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::flush, this.flushInterval, this.flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Creates a writer configured from system properties. powerschool.lastLogin.flushInterval
+     * sets the interval in milliseconds (default 1000); setting powerschool.lastLogin.durable
+     * to true writes every login synchronously, as before.
+     *
+     * @param writer the dispatcher that timestamps are written through
+     * @return a last login writer
+     */
+
+    public static LastLoginWriter fromSystemProperties(WriteDispatcher writer) {
+        return new LastLoginWriter(writer, Boolean.getBoolean("powerschool.lastLogin.durable")
+            ? 0 : Long.getLong("powerschool.lastLogin.flushInterval", 1000L));
+    }
+
+    /**
+     * Records a login. In write-behind mode the timestamp is only queued (a later login
+     * by the same user before the next flush replaces it); in durable mode it is
+     * written immediately, and this waits for the commit.
+     *
+     * @param username the user's username
+     * @param lastLogin the login timestamp
+     * @return 1 if the login was recorded; -1 otherwise
+     */
+
+    public int record(String username, String lastLogin) {
+        if (scheduler == null) {
+            try {
+                return writer.call(conn -> write(conn, username, lastLogin));
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+
+                return -1;
+            }
+        }
+
+        pending.put(username, lastLogin);
+        return 1;
+    }
+
+    /**
+     * Retrieves a login that has been recorded but not yet written. Whatever reads
+     * users.last_login must prefer this value, or a second login inside the flush
+     * interval would look like a first login.
+     *
+     * @param username the user's username
+     * @return the queued timestamp, or null if nothing is queued
+     */
+
+    public String pending(String username) {
+        String lastLogin = pending.get(username);
+
+        return lastLogin != null ? lastLogin : flushing.get(username);
+    }
+
+    /**
+     * Discards a user's queued login. Call this before resetting last_login, so an
+     * older queued login cannot overwrite the reset. If a flush is in progress, this
+     * waits for it to finish.
+     *
+     * @param username the user's username
+     */
+
+    public void cancel(String username) {
+        synchronized (flushLock) {
+            pending.remove(username);
+        }
+    }
+
+    /**
+     * Discards every queued login (e.g., before the users table is rebuilt).
+     */
+
+    public void clear() {
+        synchronized (flushLock) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Writes every queued login as one write on the writer thread. Logins that fail to write are
+     * queued again (unless a newer login for the same user has been queued since).
+     */
+
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            // the batch stays visible to pending() until it is committed
+
+            HashMap<String, String> batch = new HashMap<String, String>(pending);
+            flushing = batch;
+            batch.forEach((username, lastLogin) -> pending.remove(username, lastLogin));     // keeps any newer login
+
+            try {
+                writer.call(conn -> {
+                    try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_LAST_LOGIN_SQL)) {
+                        for (Map.Entry<String, String> entry : batch.entrySet()) {
+                            stmt.setString(1, entry.getValue());
+                            stmt.setString(2, entry.getKey());
+                            stmt.addBatch();
+                        }
+
+                        return stmt.executeBatch().length;
+                    }
+                });
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+
+                batch.forEach(pending::putIfAbsent);
+            } finally {
+                flushing = Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * Stops the flush timer and writes anything still queued.
+     */
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    /*
+     * Writes one login (on the writer's connection).
+     */
+
+    private static int write(Connection conn, String username, String lastLogin) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_LAST_LOGIN_SQL)) {
+            stmt.setString(1, lastLogin);
+            stmt.setString(2, username);
+
+            return stmt.executeUpdate() == 1 ? 1 : -1;
+        }
+    }
+}
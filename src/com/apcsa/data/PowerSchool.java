@@ -1,35 +1,64 @@
 package com.apcsa.data;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import com.apcsa.controller.Utils;
 import com.apcsa.model.Administrator;
+import com.apcsa.model.RosterEntry;
 import com.apcsa.model.Student;
+import com.apcsa.model.StudentSummary;
 import com.apcsa.model.Teacher;
+import com.apcsa.model.TeacherSummary;
+import com.apcsa.model.TranscriptEntry;
 import com.apcsa.model.User;
+import com.apcsa.security.Passwords;
 
 public class PowerSchool {
 
     private final static String PROTOCOL = "jdbc:sqlite:";
-    private final static String DATABASE_URL = "data/powerschool.db";
+    private final static String DATABASE_URL = System.getProperty("powerschool.database", "data/powerschool.db");
+    private final static InMemoryDatabase MEMORY = InMemoryDatabase.fromSystemProperties();
+    private final static String URL = MEMORY != null ? MEMORY.getUrl() : PROTOCOL + DATABASE_URL;
+    private final static ConnectionPool POOL =
+        ConnectionPool.fromSystemProperties(URL, PragmaProfile.fromSystemProperties().queryOnly());
+    private final static WriteDispatcher WRITER = WriteDispatcher.fromSystemProperties(URL);
+    private final static IdAllocator ASSIGNMENT_IDS =
+        new IdAllocator(WRITER, "assignments", Integer.getInteger("powerschool.idBlockSize", 32));
+    private final static ClassRankIndex CLASS_RANKS = new ClassRankIndex();
+    private final static ReferenceCatalog CATALOG = new ReferenceCatalog();
+    private final static LastLoginWriter LAST_LOGINS = LastLoginWriter.fromSystemProperties(WRITER);
+    private final static ForkJoinPool REPORT_POOL = new ForkJoinPool(ReportCardGenerator.PARALLELISM);
 
     /**
-     * Initializes the database if needed (or if requested).
+     * Initializes the database if needed (or if requested), then verifies that every
+     * query in QueryUtils compiles against the resulting schema.
      *
      * @param force whether or not to force-reset the database
-     * @throws Exception
+     * @throws IllegalStateException if the migrations fail or a query does not match the schema
      */
 
     public static void initialize(boolean force) {
@@ -59,6 +88,29 @@ public class PowerSchool {
                 reset();
             }
         }
+
+        // bring the schema up to date (on the writer, so the pending migrations commit
+        // together), then fail fast if any query no longer parses against it
+
+        try {
+            WRITER.call(conn -> {
+                try {
+                    new SchemaMigrator().migrate(conn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                return CLASS_RANKS.flush(conn);
+            });
+
+            try (Connection conn = getConnection()) {
+                StatementCatalog.validate(conn);
+            }
+        } catch (UncheckedIOException e) {
+            throw new IllegalStateException("Unable to read schema migration scripts.", e.getCause());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to apply schema migrations.", e);
+        }
     }
 
     /**
@@ -70,23 +122,52 @@ public class PowerSchool {
      */
 
     public static User login(String username, String password) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(QueryUtils.LOGIN_SQL)) {
-
-            stmt.setString(1, username);
-            stmt.setString(2, Utils.getHash(password));
+        try (Connection conn = getConnection()) {
+            User user = null;
+            String auth = null;
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Timestamp ts = new Timestamp(new Date().getTime());
-                    int affected = PowerSchool.updateLastLogin(conn, username, ts);
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.LOGIN_SQL)) {
+                stmt.setString(1, username);
 
-                    if (affected != 1) {
-                        System.err.println("Unable to update last login (affected rows: " + affected + ").");
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        user = new User(rs);
+                        auth = rs.getString("auth");
                     }
-                    return new User(rs);
                 }
             }
+
+            if (user == null) {
+                Passwords.simulateVerify(password);
+                return null;
+            } else if (!Passwords.verify(password, auth)) {
+                return null;
+            }
+
+            if (Passwords.needsRehash(auth)) {
+                String previous = auth;
+                String rehashed = Passwords.hash(password);
+
+                WRITER.submit(writer -> {
+                    rehashPassword(writer, username, previous, rehashed);
+                    return null;
+                });
+            }
+
+            // a login still waiting to be written is newer than the stored one
+
+            String lastLogin = LAST_LOGINS.pending(username);
+            if (lastLogin != null) {
+                user = new User(user.getUserId(), user.getAccountType(), user.getUsername(), auth, lastLogin);
+            }
+
+            Timestamp ts = new Timestamp(new Date().getTime());
+            int affected = LAST_LOGINS.record(username, ts.toString());
+
+            if (affected != 1) {
+                System.err.println("Unable to update last login (affected rows: " + affected + ").");
+            }
+            return user;
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -168,106 +249,407 @@ public class PowerSchool {
         return user;
     }
 
+    /**
+     * Writes any queued logins and writes, then releases all pooled database
+     * connections and worker threads. An in-memory database is snapshotted to disk
+     * (if configured) and freed.
+     */
+
+    public static void shutdown() {
+        LAST_LOGINS.shutdown();
+        WRITER.shutdown();
+        REPORT_POOL.shutdown();
+        POOL.shutdown();
+
+        if (MEMORY != null) {
+            MEMORY.close();
+        }
+    }
+
+    /**
+     * Copies the database to a file while it stays online. The copy is consistent: it
+     * holds exactly the writes committed before the snapshot started.
+     *
+     * @param file the file to write (replaced atomically if it exists)
+     * @return 1 if the snapshot was written; -1 otherwise
+     */
+
+    public static int snapshot(Path file) {
+        LAST_LOGINS.flush();
+
+        try (Connection conn = getConnection()) {
+            InMemoryDatabase.snapshot(conn, file);
+
+            return 1;
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return true if the database is held in memory; false if it is on disk
+     */
+
+    public static boolean isInMemory() {
+        return MEMORY != null;
+    }
+
     /*
-     * Establishes a connection to the database.
+     * Borrows a connection to the database from the connection pool. Closing the
+     * connection returns it to the pool.
      *
      * @return a database Connection object
      * @throws SQLException
      */
 
     private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(PROTOCOL + DATABASE_URL);
+        return POOL.getConnection();
+    }
+
+    /*
+     * Retrieves the cached departments, courses, and teachers, loading them (on a
+     * pooled connection) only if they are not already cached.
+     */
+
+    private static ReferenceCatalog.Snapshot getCatalog() throws SQLException {
+        ReferenceCatalog.Snapshot snapshot = CATALOG.current();
+
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        try (Connection conn = getConnection()) {
+            return CATALOG.get(conn);
+        }
     }
 
     /*
-     * Updates the last login time for the user.
+     * Queues a write on the writer thread. If the write (or the batch it is committed
+     * with) fails, the cached class ranks are discarded, since they may have been
+     * updated for changes that were rolled back.
      *
-     * @param conn the current database connection
-     * @param username the user's username
-     * @param ts the current timestamp
-     * @return the number of affected rows
+     * @param write the write
+     * @return the write's result
      */
 
-    private static int updateLastLogin(Connection conn, String username, Timestamp ts) {
-        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_LAST_LOGIN_SQL)) {
+    private static <T> CompletableFuture<T> submit(WriteDispatcher.Write<T> write) {
+        return WRITER.submit(write).whenComplete((result, e) -> {
+            if (e != null) {
+                CLASS_RANKS.invalidate();
+            }
+        });
+    }
 
-            conn.setAutoCommit(false);
-            stmt.setString(1, ts.toString());
-            stmt.setString(2, username);
+    /*
+     * Waits for a queued write to be committed.
+     *
+     * @param future the write's result
+     * @return the write's result; -1 if it failed
+     */
 
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return 1;
-            } else {
-                conn.rollback();
+    private static int await(CompletableFuture<Integer> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return failed(e);
+        }
+    }
 
-                return -1;
+    /*
+     * Reports a failed write.
+     *
+     * @param e the failure (or the exception wrapping it)
+     * @return -1
+     */
+
+    private static int failed(Throwable e) {
+        (e instanceof CompletionException && e.getCause() != null ? e.getCause() : e).printStackTrace();
+
+        return -1;
+    }
+
+    /*
+     * Runs a query and maps each row. The mapper factory resolves column indexes once
+     * per execution.
+     *
+     * @param sql the query
+     * @param mapper creates the row mapper for the ResultSet
+     * @param params the query parameters
+     * @return the mapped rows
+     */
+
+    private static <T> ArrayList<T> query(String sql, RowMapper.Factory<T> mapper, Object... params) {
+        ArrayList<T> rows = new ArrayList<T>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> rowMapper = mapper.create(rs);
+
+                while (rs.next()) {
+                    rows.add(rowMapper.mapRow(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
+        }
+
+        return rows;
+    }
+
+    /*
+     * Recomputes a marking period grade, then the course grade and GPA that depend on
+     * it, using the caller's connection (and transaction).
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @param markingPeriod the marking period (1-6)
+     * @return 1 if the grades were updated; -1 otherwise
+     * @throws SQLException
+     */
 
+    private static int refreshGrades(Connection conn, int courseId, int studentId, int markingPeriod) throws SQLException {
+        if (updateMarkingPeriodGrade(conn, courseId, studentId, markingPeriod) == -1) {
             return -1;
         }
+
+        return updateCourseGrade(conn, courseId, studentId);
     }
 
     /*
-     * Builds the database. Executes a SQL script from a configuration file to
-     * create the tables, setup the primary and foreign keys, and load sample data.
+     * Recomputes a course grade from its marking period and exam grades, applying the
+     * change to the student's GPA.
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @return 1 if the grade was updated; -1 otherwise
+     * @throws SQLException
      */
 
-    private static void reset() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             BufferedReader br = new BufferedReader(new FileReader(new File("config/setup.sql")))) {
+    private static int updateCourseGrade(Connection conn, int courseId, int studentId) throws SQLException {
+        ArrayList<Double> grades = new ArrayList<Double>();
+        Double previous;
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MARKING_PERIOD_GRADES)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+
+                for (int i = 1; i <= 6; i++) {
+                    double grade = rs.getDouble(i);
+                    grades.add(rs.wasNull() ? null : grade);
+                }
 
-            String line;
-            StringBuffer sql = new StringBuffer();
+                double grade = rs.getDouble("grade");
+                previous = rs.wasNull() ? null : grade;
+            }
+        }
 
-            // read the configuration file line-by-line to get SQL commands
+        Double grade = Utils.getGrade(grades);
 
-            while ((line = br.readLine()) != null) {
-                sql.append(line);
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_GRADE)) {
+            if (grade == null) {
+                stmt.setNull(1, Types.REAL);
+            } else {
+                stmt.setDouble(1, grade);
             }
+            stmt.setInt(2, courseId);
+            stmt.setInt(3, studentId);
+            stmt.executeUpdate();
+        }
 
-            // execute SQL commands one-by-one
+        if (GpaEngine.applyCourseGrade(conn, courseId, studentId, previous, grade)) {
+            CLASS_RANKS.update(conn, studentId);
+        }
 
-            for (String command : sql.toString().split(";")) {
-                if (!command.strip().isEmpty()) {
-                    stmt.executeUpdate(command);
-                }
+        return 1;
+    }
+
+    /*
+     * Recomputes a marking period grade using the caller's connection (and transaction).
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @param markingPeriod the marking period (1-6)
+     * @return 1 if the grade was updated; -1 otherwise
+     * @throws SQLException
+     */
+
+    private static int updateMarkingPeriodGrade(Connection conn, int courseId, int studentId, int markingPeriod) throws SQLException {
+        String sql = getMarkingPeriodUpdate(markingPeriod);
+
+        if (sql == null) {
+            return -1;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, studentId);
+
+            return stmt.executeUpdate() == 1 ? 1 : -1;
+        }
+    }
+
+    /*
+     * Selects the course_grades update for a marking period.
+     *
+     * @param markingPeriod the marking period (1-6)
+     * @return the matching UPDATE_COURSE_* query (null for an invalid marking period)
+     */
+
+    private static String getMarkingPeriodUpdate(int markingPeriod) {
+        switch (markingPeriod) {
+            case 1: return QueryUtils.UPDATE_COURSE_MP1;
+            case 2: return QueryUtils.UPDATE_COURSE_MP2;
+            case 3: return QueryUtils.UPDATE_COURSE_MP3;
+            case 4: return QueryUtils.UPDATE_COURSE_MP4;
+            case 5: return QueryUtils.UPDATE_COURSE_MIDTERM;
+            case 6: return QueryUtils.UPDATE_COURSE_FINAL;
+            default: return null;
+        }
+    }
+
+    /*
+     * Looks up the marking period an assignment belongs to.
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @return the marking period (-1 if the assignment does not exist)
+     * @throws SQLException
+     */
+
+    private static int getMarkingPeriod(Connection conn, int courseId, int assignmentId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_MARKING_PERIOD)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, assignmentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt("marking_period") : -1;
             }
-        } catch (FileNotFoundException e) {
+        }
+    }
+
+    /*
+     * Applies a change to a student's running total for a marking period, creating
+     * the total if this is the first grade recorded for it.
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @param markingPeriod the marking period (1-6)
+     * @param pointsEarned the change in points earned
+     * @param pointsPossible the change in points possible
+     * @param percent the change in the sum of assignment percentages
+     * @param graded the change in the number of graded assignments
+     * @throws SQLException
+     */
+
+    private static void updateGradeAggregate(Connection conn, int courseId, int studentId, int markingPeriod,
+            double pointsEarned, double pointsPossible, double percent, int graded) throws SQLException {
+
+        try (PreparedStatement insert = conn.prepareStatement(QueryUtils.ADD_GRADE_AGGREGATE);
+             PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_GRADE_AGGREGATE)) {
+
+            insert.setInt(1, courseId);
+            insert.setInt(2, studentId);
+            insert.setInt(3, markingPeriod);
+            insert.executeUpdate();
+
+            update.setDouble(1, pointsEarned);
+            update.setDouble(2, pointsPossible);
+            update.setDouble(3, percent);
+            update.setInt(4, graded);
+            update.setInt(5, courseId);
+            update.setInt(6, studentId);
+            update.setInt(7, markingPeriod);
+            update.executeUpdate();
+        }
+    }
+
+    /*
+     * Upgrades a stored password hash after a successful login. The update only
+     * applies if the hash is unchanged, so a concurrent password change wins.
+     *
+     * @param conn the writer's connection
+     * @param username the user's username
+     * @param previous the hash the password was verified against
+     * @param auth the new hash
+     */
+
+    private static void rehashPassword(Connection conn, String username, String previous, String auth) {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.REHASH_PASSWORD)) {
+            stmt.setString(1, auth);
+            stmt.setString(2, username);
+            stmt.setString(3, previous);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();     // the old hash still works; try again next login
+        }
+    }
+
+    /*
+     * Builds the database. Streams a SQL script from a configuration file to create
+     * the tables, setup the primary and foreign keys, and load sample data, all in a
+     * single write on the writer thread. Schema migrations are re-applied afterwards
+     * by initialize().
+     */
+
+    private static void reset() {
+        LAST_LOGINS.clear();
+
+        try (BufferedReader br = Files.newBufferedReader(Paths.get("config/setup.sql"), StandardCharsets.UTF_8)) {
+            WRITER.call(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    new ScriptRunner(conn).execute(br);
+                    stmt.execute(QueryUtils.DROP_SCHEMA_VERSION);      // migrations are re-applied to the new tables
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                return null;
+            });
+        } catch (NoSuchFileException e) {
             System.err.println("Error: Unable to load SQL configuration file.");
             e.printStackTrace();
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("Error: Unable to open and/or read SQL configuration file.");
             e.printStackTrace();
         } catch (SQLException e) {
             System.err.println("Error: Unable to execute SQL script from configuration file.");
             e.printStackTrace();
+        } finally {
+            CATALOG.invalidate();
+            CLASS_RANKS.invalidate();       // rebuilt from the new students table
+            ASSIGNMENT_IDS.reset();         // the sequences table starts over
         }
     }
     
     public static int updatePassword(String username, String newPassword) {
-        try (Connection conn = getConnection();
-        	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_STUDENT_PASSWORD)) {
+        String auth = Passwords.hash(newPassword);      // hashed here, not on the writer thread
 
-            conn.setAutoCommit(false);
-            stmt.setString(1, Utils.getHash(newPassword));
-            stmt.setString(2, username);
+        return await(submit(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_STUDENT_PASSWORD)) {
+                stmt.setString(1, auth);
+                stmt.setString(2, username);
 
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return 1;
-            } else {
-                conn.rollback();
-                return -1;
+                return stmt.executeUpdate() == 1 ? 1 : -1;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-
-            return -1;
-        }
+        }));
     }
     
     public static String getFirstName(User activeUser) {
@@ -288,95 +670,18 @@ public class PowerSchool {
            return "root";
     }
     
-    public static ArrayList<Integer> getCourseId(int studentId) {
-    	ArrayList<Integer> resultList = new ArrayList<Integer>();
-    	try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID)) {
-    		stmt.setInt(1, studentId);
+    /**
+     * Retrieves a student's transcript (courses, marking period and final grades,
+     * and teachers) in a single query.
+     *
+     * @param studentId the student's ID
+     * @return the student's courses, in course order
+     */
 
-    		try (ResultSet rs = stmt.executeQuery()) {
-        	   while (rs.next()) {
-        		   resultList.add(rs.getInt("course_id"));
-        	   }
-        	   return resultList;
-        	   
-    		}
-    	} catch (SQLException e) {
-    		e.printStackTrace();
-        }
-    	return resultList;
+    public static ArrayList<TranscriptEntry> getTranscript(int studentId) {
+        return query(QueryUtils.GET_TRANSCRIPT, TranscriptEntry::mapper, studentId);
     }
     
-    public static ArrayList<String> getCourseName(User activeUser, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courses = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_NAME)) {
-     			for(int i = 0; i <= courseIds.size()-1; i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("title");
-                  		   courses.add(result);
-     					}
-     				}
-     			}
-     			return courses;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courses;
-     }
-    
-    public static ArrayList<String> getCourseGrade(int studentId, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courseGrades = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_GRADE)) {
-     			
-     			for(int i = 0; i < courseIds.size(); i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				stmt.setInt(2, studentId);
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("grade");
-
-                  		   if(result == null) {
-                  			 courseGrades.add("--");
-                  		   }else {
-                  			 courseGrades.add(result);
-                  		   }
-     					}
-     				}
-     			}
-     			return courseGrades;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courseGrades;
-     }
-    
-    public static ArrayList<String> getCourseNumber(User activeUser, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courses = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_NUMBER)) {
-     			for(int i = 0; i <= courseIds.size()-1; i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("course_no");
-                  		   courses.add(result);
-     					}
-     				}
-     			}
-     			return courses;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courses;
-     }
-    
     public static ArrayList<String> getAssignmentTitle(int courseId, int markingPeriod) {
     	ArrayList<String> title = new ArrayList<String>();
      	try (Connection conn = getConnection();
@@ -417,75 +722,25 @@ public class PowerSchool {
     }
     
     public static ArrayList<String> getCourses(int departmentId) {
-    	ArrayList<String> courses = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSES)) {
-     			stmt.setInt(1, departmentId);
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   String result = rs.getString("course_no");
-                  	 courses.add(result);
-     				}
-     			}	
-     		return courses;
+        ArrayList<String> courses = new ArrayList<String>();
+
+        try {
+            for (ReferenceCatalog.Course course : getCatalog().courses(departmentId)) {
+                courses.add(course.courseNo());
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return courses;
-     }
-    
-    public static int getCourseIdFromCourseNo(String courseNo){
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_FROM_DEPARTMENT_ID)) {
-
-               stmt.setString(1, courseNo);
-
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getInt("course_id");
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
 
-           return 1;
+        return courses;
     }
     
-    public static int addAssignment(int courseId, int assignmentId, int markingPeriod, int isMidterm, int isFinal, String title, int pointValue) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, courseId);
-               stmt.setInt(2, assignmentId);
-               stmt.setInt(3, markingPeriod);
-               stmt.setInt(4, isMidterm);
-               stmt.setInt(5, isFinal);
-               stmt.setString(6, title);
-               stmt.setInt(7, pointValue);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static int assignmentRows() {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.PREVIOUS_ASSIGNMENT_ID)) {
-                  
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("count(*)");
-                }
+    public static int getCourseIdFromCourseNo(String courseNo) {
+        try {
+            ReferenceCatalog.Course course = getCatalog().course(courseNo);
+
+            if (course != null) {
+                return course.courseId();
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -494,6 +749,55 @@ public class PowerSchool {
         return 1;
     }
     
+    public static int addAssignment(int courseId, int assignmentId, int markingPeriod, int isMidterm, int isFinal, String title, int pointValue) {
+        return await(submit(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT)) {
+                stmt.setInt(1, courseId);
+                stmt.setInt(2, assignmentId);
+                stmt.setInt(3, markingPeriod);
+                stmt.setInt(4, isMidterm);
+                stmt.setInt(5, isFinal);
+                stmt.setString(6, title);
+                stmt.setInt(7, pointValue);
+
+                return stmt.executeUpdate() == 1 ? 1 : -1;
+            }
+        }));
+    }
+    
+    /**
+     * Allocates a new, unique assignment ID.
+     *
+     * @return the assignment ID (-1 if one could not be allocated)
+     */
+
+    public static int nextAssignmentId() {
+        try {
+            return ASSIGNMENT_IDS.nextId();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reserves a contiguous block of new assignment IDs (e.g., for a bulk insert).
+     *
+     * @param count the number of IDs to reserve
+     * @return the first ID in the block (-1 if the block could not be reserved)
+     */
+
+    public static int reserveAssignmentIds(int count) {
+        try {
+            return ASSIGNMENT_IDS.reserve(count);
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+    
     public static ArrayList<String> getAssignments(int courseId, int markingPeriod) {
     	ArrayList<String> assignments = new ArrayList<String>();
     	try (Connection conn = getConnection();
@@ -514,46 +818,63 @@ public class PowerSchool {
      	return assignments;
     }
     
+    /**
+     * Deletes an assignment and its grades, backing the grades out of the affected
+     * students' running totals and marking period grades in the same transaction.
+     *
+     * @param courseId the course's ID
+     * @param markingPeriod the marking period (1-6)
+     * @param title the assignment's title
+     * @return 1 if the assignment was deleted; -1 otherwise
+     */
+
     public static int deleteAssignment(int courseId, int markingPeriod, String title) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, courseId);
-               stmt.setInt(2, markingPeriod);
-               stmt.setString(3, title);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static int deleteAssignmentGrade(int assignmentId) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, assignmentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
+        int assignmentId = getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
+
+        return await(submit(conn -> {
+            try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_GRADES);
+                 PreparedStatement deleteGrades = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT_GRADE);
+                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT)) {
+
+                ArrayList<Integer> studentIds = new ArrayList<Integer>();
+
+                select.setInt(1, courseId);
+                select.setInt(2, assignmentId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getInt("is_graded") == 1) {
+                            double pointsEarned = rs.getDouble("points_earned");
+                            double pointsPossible = rs.getDouble("points_possible");
+
+                            updateGradeAggregate(conn, courseId, rs.getInt("student_id"), markingPeriod,
+                                -pointsEarned, -pointsPossible, -pointsEarned * 100 / pointsPossible, -1);
+                            studentIds.add(rs.getInt("student_id"));
+                        }
+                    }
+                }
+
+                deleteGrades.setInt(1, courseId);
+                deleteGrades.setInt(2, assignmentId);
+                deleteGrades.executeUpdate();
+
+                stmt.setInt(1, courseId);
+                stmt.setInt(2, markingPeriod);
+                stmt.setString(3, title);
+
+                if (stmt.executeUpdate() == 1) {
+                    for (int studentId : studentIds) {
+                        refreshGrades(conn, courseId, studentId, markingPeriod);
+                    }
+
+                    CLASS_RANKS.flush(conn);
+                    return 1;
+                } else {
+                    conn.rollback();
+                    return -1;
+                }
+            }
+        }));
     }
-    
     public static int getPointValue(String title) {
     	try (Connection conn = getConnection();
     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_POINT_VALUE)) {
@@ -571,639 +892,455 @@ public class PowerSchool {
 
         return 1;
     }
-    
-    public static ArrayList<String> getAssignmentIds() {
-    	ArrayList<String> assignmentIds = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_IDS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	 assignmentIds.add(rs.getString("assignment_id"));
-     				}
-     			}	
-     		return assignmentIds;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return assignmentIds;
-    }
-    
-    public static ArrayList<String> getTeachers() {
-    	ArrayList<String> teachers = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_TEACHERS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	 teachers.add(rs.getString("first_name"));
-                  	teachers.add(rs.getString("last_name"));
-     				}
-     			}	
-     		return teachers;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return teachers;
-    }
-    
-    public static String getDepartmentId(String firstName) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_DEPARTMENT_ID)) {
-     			
-    			stmt.setString(1, firstName);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   return rs.getString("department_id");
-     				}
-     			}	
-     			return "not working";
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    	return "not working";
-    }
-    
-    public static String getDepartmentTitle(String departmentId) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_DEPARTMENT_TITLE)) {
-     			
-    			stmt.setString(1, departmentId);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getString("title");
-     				}
-     			}	
-     			return "not working";
+
+    /**
+     * Retrieves an assignment's point value. Titles are only unique within a course's
+     * marking period, so the lookup is scoped to both.
+     *
+     * @param courseId the course's ID
+     * @param markingPeriod the assignment's marking period
+     * @param title the assignment's title
+     * @return the point value (-1 if there is no such assignment)
+     */
+
+    public static int getPointValue(int courseId, int markingPeriod, String title) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_BY_TITLE)) {
+
+            stmt.setInt(1, courseId);
+            stmt.setString(2, title);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getInt("marking_period") == markingPeriod) {
+                        return rs.getInt("point_value");
+                    }
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-		return "not working";
+
+        return -1;
     }
     
     public static ArrayList<String> getAllDepartmentTitles() {
-    	ArrayList<String> departmentTitles = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ALL_DEPARTMENT_TITLES)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   String result = rs.getString("title");
-                  	 departmentTitles.add(result);
-     				}
-     			}	
-     		return departmentTitles;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return departmentTitles;
-    }
-    
-    public static ArrayList<String> getTeachersWithDepartmentId(int department) {
-    	ArrayList<String> teachers = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_TEACHERS_WITH_DEPARTMENT_ID)) {
-     			
-    			stmt.setInt(1, department);
-    			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   String result = rs.getString("first_name");
-                  	   String result2 = rs.getString("last_name");
-                  	   teachers.add(result);
-                  	   teachers.add(result2);
-     				}
-     			}	
-     		return teachers;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return teachers;
-    }
-    
-    public static ArrayList<String> getStudents() {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   String result = rs.getString("first_name");
-                  	   String result2 = rs.getString("last_name");
-                  	   students.add(result);
-                  	   students.add(result2);
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return students;
-    }
-    
-    public static ArrayList<String> getGradYears() {
-    	ArrayList<String> gradYears = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   gradYears.add(rs.getString("graduation"));
-     				}
-     			}	
-     		return gradYears;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return gradYears;
-    }
-    
-    public static ArrayList<String> getStudentsByGrade(int gradeLevel) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_BY_GRADE)) {
-     			
-    			stmt.setInt(1,  gradeLevel);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("first_name"));
-                  	   students.add(rs.getString("last_name"));
-                  	   students.add(rs.getString("gpa"));
-     				}
-     			}	
-     		return students;
+        ArrayList<String> departmentTitles = new ArrayList<String>();
+
+        try {
+            for (ReferenceCatalog.Department department : getCatalog().departments()) {
+                departmentTitles.add(department.title());
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return students;
+
+        return departmentTitles;
     }
     
     public static ArrayList<String> getAllCourses() {
-    	ArrayList<String> courses = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ALL_COURSES)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					courses.add(rs.getString("course_no"));
-     				}
-     			}	
-     		return courses;
+        ArrayList<String> courses = new ArrayList<String>();
+
+        try {
+            for (ReferenceCatalog.Course course : getCatalog().courses()) {
+                courses.add(course.courseNo());
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return courses;
+
+        return courses;
     }
     
-    public static String getCourseIdFromCourseNo2(String courseNo) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_FROM_COURSE_NO)) {
-     			stmt.setString(1,  courseNo);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getString("course_id");
-     				}
-     			}	
-     		return "no";
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return "no";
+    public static int updatePasswordAndTime(String username) {
+        LAST_LOGINS.cancel(username);     // a queued login would undo the reset
+
+        String auth = Passwords.hash(username);
+
+        return await(submit(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_PASSWORD_AND_TIME)) {
+                stmt.setString(1, auth);
+                stmt.setString(2, "0000-00-00 00:00:00.000");
+                stmt.setString(3, username);
+
+                if (stmt.executeUpdate() == 1) {
+                    return 1;
+                } else {
+                    System.out.println("\nUser " + username + " does not exist.\n");
+                    return -1;
+                }
+            }
+        }));
     }
     
-    public static ArrayList<String> getStudentId(String courseId) {
-    	ArrayList<String> studentIds = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_ID_FROM_COURSE_ID)) {
-     			
-    			stmt.setString(1, courseId);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					studentIds.add(rs.getString("student_id"));
-     				}
-     			}	
-     		return studentIds;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return studentIds;
+    /**
+     * Records a student's grade on an assignment, then updates the student's running
+     * total and marking period grade in the same transaction.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param studentId the student's ID
+     * @param pointsEarned the points earned
+     * @param pointsPossible the assignment's point value
+     * @param isGraded 1 if the grade counts toward the marking period grade; 0 otherwise
+     * @return 1 if the grade was recorded; -1 otherwise
+     */
+
+    public static int addAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible, int isGraded) {
+        return await(addAssignmentGradeAsync(courseId, assignmentId, studentId, pointsEarned, pointsPossible, isGraded));
     }
-    
-    
-    
-    public static ArrayList<String> getStudentsByStudentId(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_BY_STUDENT_ID)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("first_name"));
-                  	   students.add(rs.getString("last_name"));
-                  	   students.add(rs.getString("gpa"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return students;
+
+    /**
+     * Queues a student's grade on an assignment (see addAssignmentGrade) without
+     * waiting for it to be written.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param studentId the student's ID
+     * @param pointsEarned the points earned
+     * @param pointsPossible the assignment's point value
+     * @param isGraded 1 if the grade counts toward the marking period grade; 0 otherwise
+     * @return 1 once the grade has been committed, or -1 if it could not be recorded
+     */
+
+    public static CompletableFuture<Integer> addAssignmentGradeAsync(int courseId, int assignmentId, int studentId,
+            double pointsEarned, int pointsPossible, int isGraded) {
+
+        return submit(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT_GRADE)) {
+                stmt.setInt(1, courseId);
+                stmt.setInt(2, assignmentId);
+                stmt.setInt(3, studentId);
+                stmt.setDouble(4, pointsEarned);
+                stmt.setInt(5, pointsPossible);
+                stmt.setInt(6, isGraded);
+
+                int markingPeriod = getMarkingPeriod(conn, courseId, assignmentId);
+
+                if (markingPeriod != -1 && stmt.executeUpdate() == 1) {
+                    if (isGraded == 1) {
+                        updateGradeAggregate(conn, courseId, studentId, markingPeriod,
+                            pointsEarned, pointsPossible, pointsEarned * 100 / pointsPossible, 1);
+                        refreshGrades(conn, courseId, studentId, markingPeriod);
+                    }
+
+                    CLASS_RANKS.flush(conn);
+                    return 1;
+                } else {
+                    conn.rollback();
+                    return -1;
+                }
+            }
+        }).exceptionally(PowerSchool::failed);
     }
-    
-    public static int updatePasswordAndTime(String username) {
+
+    /**
+     * Retrieves every student's points earned on an assignment.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @return the points earned, keyed by student ID (students without a grade are absent)
+     */
+
+    public static HashMap<Integer, Double> getAssignmentGrades(int courseId, int assignmentId) {
+        HashMap<Integer, Double> grades = new HashMap<Integer, Double>();
+
         try (Connection conn = getConnection();
-        	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_PASSWORD_AND_TIME)) {
+             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_GRADES)) {
 
-            conn.setAutoCommit(false);
-            stmt.setString(1, Utils.getHash(username));
-            stmt.setString(2, "0000-00-00 00:00:00.000");
-            stmt.setString(3, username);
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, assignmentId);
 
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return 1;
-            } else {
-            	System.out.println("\nUser " + username + " does not exist.\n");
-                conn.rollback();
-                return -1;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    grades.put(rs.getInt("student_id"), rs.getDouble("points_earned"));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
-
-            return -1;
         }
+
+        return grades;
     }
-    
-    public static String getStudentGrade(String courseId, String studentId) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_GRADE)) {
-     			
-    			stmt.setString(1,  courseId);
-    			stmt.setString(2,  studentId);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getString("grade");
-     				}
-     			}	
-     		return "no";
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return "no";
-    }
-    
-    public static ArrayList<String> getStudentsFirstNames(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_FIRST_NAMES)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("first_name"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return students;
-    }
-    
-    public static ArrayList<String> getStudentsLastNames(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_LAST_NAMES)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("last_name"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return students;
+
+    /**
+     * Records grades for many students on one assignment in a single transaction. New
+     * and changed grades are each sent as one batch, the running totals and marking
+     * period grades are updated in batches, and each affected course grade (and GPA)
+     * is recomputed once.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param pointsPossible the assignment's point value
+     * @param grades the points earned, keyed by student ID
+     * @return the number of grades recorded; -1 if none could be recorded
+     */
+
+    public static int addAssignmentGrades(int courseId, int assignmentId, int pointsPossible, Map<Integer, Double> grades) {
+        return await(addAssignmentGradesAsync(courseId, assignmentId, pointsPossible, grades));
     }
-    
-    public static int addAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible, int isGraded) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, courseId);
-               stmt.setInt(2, assignmentId);
-               stmt.setInt(3, studentId);
-               stmt.setDouble(4, pointsEarned);
-               stmt.setInt(5, pointsPossible);
-               stmt.setInt(6, isGraded);
-               
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
+
+    /**
+     * Queues grades for many students on one assignment (see addAssignmentGrades)
+     * without waiting for them to be written.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param pointsPossible the assignment's point value
+     * @param grades the points earned, keyed by student ID (not modified until the write completes)
+     * @return the number of grades recorded once they have been committed, or -1 if none could be recorded
+     */
+
+    public static CompletableFuture<Integer> addAssignmentGradesAsync(int courseId, int assignmentId, int pointsPossible,
+            Map<Integer, Double> grades) {
+
+        return submit(conn -> {
+            int markingPeriod = getMarkingPeriod(conn, courseId, assignmentId);
+
+            if (markingPeriod == -1) {
+                return -1;
+            }
+
+            writeAssignmentGrades(conn, courseId, assignmentId, markingPeriod, pointsPossible, grades);
+            CLASS_RANKS.flush(conn);
+
+            return grades.size();
+        }).exceptionally(PowerSchool::failed);
     }
-    
-    public static int getAssignmentIdFromTitlePlus(String title, int courseId, int markingPeriod) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_ID_FROM_TITLE_PLUS)) {
-     			
-    			stmt.setString(1,  title);
-    			stmt.setInt(2,  courseId);
-    			stmt.setInt(3,  markingPeriod);
-    			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getInt("assignment_id");
-     				}
-     			}	
-     		return -1;
-        } catch (SQLException e) {
+
+    /**
+     * Imports assignment grades from a CSV file of course_no, assignment title,
+     * student (ID or username), and points earned. The file is streamed, so its size
+     * does not affect memory use.
+     *
+     * @param file the CSV file
+     * @param departmentId the importing teacher's department (courses outside it are rejected), or -1 for any
+     * @param errors where per-row errors are reported
+     * @return a summary of the import (null if the file could not be read)
+     */
+
+    public static GradeImporter.Summary importGrades(Path file, int departmentId, PrintStream errors) {
+        try (Connection conn = getConnection();
+             BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+            return new GradeImporter(conn, WRITER, departmentId, errors).execute(br);
+        } catch (NoSuchFileException e) {
+            errors.println("File not found: " + file);
+        } catch (IOException | SQLException e) {
             e.printStackTrace();
         }
-     	return -1;
+
+        return null;
     }
-    
-    public static int assignmentGradesRows() {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.ROWS_IN_ASSIGNMENT_GRADES)) {
-                  
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("count(*)");
-                }
-            }
-        } catch (SQLException e) {
+
+    /**
+     * Exports a dataset to a file, replacing the file if it exists.
+     *
+     * @param dataset the table to export
+     * @param format the output format
+     * @param filter the rows to include
+     * @param file the destination file
+     * @return the number of rows written (-1 on failure)
+     */
+
+    public static long export(GradebookExporter.Dataset dataset, GradebookExporter.Format format,
+            GradebookExporter.Filter filter, Path file) {
+
+        try (Connection conn = getConnection();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            return new GradebookExporter(conn).export(dataset, format, filter, channel);
+        } catch (IOException | SQLException e) {
             e.printStackTrace();
         }
 
-        return 1;
+        return -1;
     }
-    
-    public static int previousGrade(int courseId, int assignmentId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.PREVIOUS_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, assignmentId);
-    		stmt.setInt(3, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("points_earned");
-                }
-            }
-        } catch (SQLException e) {
+
+    /**
+     * Generates report cards for every student in a grade level.
+     *
+     * @param gradeLevel the grade level (9 through 12)
+     * @param directory the directory report cards are written to
+     * @param combined true for a single file of every report card; false for one file per student
+     * @return a summary of the run (null on failure)
+     */
+
+    public static ReportCardGenerator.Summary generateReportCards(int gradeLevel, Path directory, boolean combined) {
+        try (Connection conn = getConnection()) {
+            return new ReportCardGenerator(REPORT_POOL).generate(conn, gradeLevel, directory, combined);
+        } catch (IOException | SQLException e) {
             e.printStackTrace();
         }
 
-        return -1;
+        return null;
     }
-    
-    public static int checkGrade(int courseId, int assignmentId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.FIND_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, assignmentId);
-    		stmt.setInt(3, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("is_graded");
+
+    /*
+     * Writes grades for many students on one assignment using the caller's connection
+     * (and transaction), then recomputes each affected course grade and GPA once.
+     * Class ranks are updated in memory; the caller flushes them.
+     *
+     * @param conn the current database connection
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param markingPeriod the assignment's marking period
+     * @param pointsPossible the assignment's point value
+     * @param grades the points earned, keyed by student ID
+     * @throws SQLException
+     */
+
+    static void writeAssignmentGrades(Connection conn, int courseId, int assignmentId, int markingPeriod,
+            int pointsPossible, Map<Integer, Double> grades) throws SQLException {
+
+        HashMap<Integer, Double> previous = new HashMap<Integer, Double>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_GRADES)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, assignmentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    // ungraded rows stay out of the running totals, as in updateAssignmentGrade
+
+                    previous.put(rs.getInt("student_id"), rs.getInt("is_graded") == 1 ? rs.getDouble("points_earned") : null);
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
 
-        return -1;
+        try (PreparedStatement insert = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT_GRADE);
+             PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_ASSIGNMENT_GRADE);
+             PreparedStatement addAggregate = conn.prepareStatement(QueryUtils.ADD_GRADE_AGGREGATE);
+             PreparedStatement updateAggregate = conn.prepareStatement(QueryUtils.UPDATE_GRADE_AGGREGATE);
+             PreparedStatement refresh = conn.prepareStatement(getMarkingPeriodUpdate(markingPeriod))) {
+
+            for (Map.Entry<Integer, Double> grade : grades.entrySet()) {
+                int studentId = grade.getKey();
+                double pointsEarned = grade.getValue();
+                double earned;
+                double possible;
+                int graded;
+
+                if (!previous.containsKey(studentId)) {
+                    insert.setInt(1, courseId);
+                    insert.setInt(2, assignmentId);
+                    insert.setInt(3, studentId);
+                    insert.setDouble(4, pointsEarned);
+                    insert.setInt(5, pointsPossible);
+                    insert.setInt(6, 1);
+                    insert.addBatch();
+
+                    earned = pointsEarned;
+                    possible = pointsPossible;
+                    graded = 1;
+                } else {
+                    update.setDouble(1, pointsEarned);
+                    update.setInt(2, courseId);
+                    update.setInt(3, assignmentId);
+                    update.setInt(4, studentId);
+                    update.addBatch();
+
+                    if (previous.get(studentId) == null) {
+                        continue;
+                    }
+                    earned = pointsEarned - previous.get(studentId);
+                    possible = 0;
+                    graded = 0;
+                }
+
+                addAggregate.setInt(1, courseId);
+                addAggregate.setInt(2, studentId);
+                addAggregate.setInt(3, markingPeriod);
+                addAggregate.addBatch();
+
+                updateAggregate.setDouble(1, earned);
+                updateAggregate.setDouble(2, possible);
+                updateAggregate.setDouble(3, earned * 100 / pointsPossible);
+                updateAggregate.setInt(4, graded);
+                updateAggregate.setInt(5, courseId);
+                updateAggregate.setInt(6, studentId);
+                updateAggregate.setInt(7, markingPeriod);
+                updateAggregate.addBatch();
+
+                refresh.setInt(1, courseId);
+                refresh.setInt(2, studentId);
+                refresh.addBatch();
+            }
+
+            insert.executeBatch();
+            update.executeBatch();
+            addAggregate.executeBatch();
+            updateAggregate.executeBatch();
+            refresh.executeBatch();
+        }
+
+        for (int studentId : grades.keySet()) {
+            updateCourseGrade(conn, courseId, studentId);
+        }
     }
-    
-    public static int updateAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_ASSIGNMENT_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, pointsEarned);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, assignmentId);
-               stmt.setInt(4, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
+
+    /*
+     * Writes changed class ranks using the caller's connection (and transaction).
+     */
+
+    static int flushClassRanks(Connection conn) throws SQLException {
+        return CLASS_RANKS.flush(conn);
     }
-    
-    public static ArrayList<Double> getGrades(int courseId, int assignmentId, int studentId) {
-    	ArrayList<Double> totalGrades = new ArrayList<Double>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_GRADES)) {
-     			
-    			stmt.setInt(1,  courseId);
-    			stmt.setInt(2,  assignmentId);
-    			stmt.setInt(3,  studentId);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					totalGrades.add(rs.getDouble("points_earned"));
-     					totalGrades.add(rs.getDouble("points_possible"));
-     				}
-     			}	
-     		return totalGrades;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return totalGrades;
+
+    /*
+     * Discards the in-memory class ranks after a rolled-back write.
+     */
+
+    static void invalidateClassRanks() {
+        CLASS_RANKS.invalidate();
     }
     
-    public static ArrayList<Integer> getAssignmentIdByMP(int markingPeriod) {
-    	ArrayList<Integer> assignments = new ArrayList<Integer>();
+    public static int getAssignmentIdFromTitlePlus(String title, int courseId, int markingPeriod) {
     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_BY_MP)) {
+     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_ID_FROM_TITLE_PLUS)) {
      			
-    			stmt.setInt(1,  markingPeriod);
-     			try (ResultSet rs = stmt.executeQuery()) {
+    			stmt.setString(1,  title);
+    			stmt.setInt(2,  courseId);
+    			stmt.setInt(3,  markingPeriod);
+    			try (ResultSet rs = stmt.executeQuery()) {
      				while (rs.next()) {
-     					assignments.add(rs.getInt("assignment_id"));
+     					return rs.getInt("assignment_id");
      				}
      			}	
-     		return assignments;
+     		return -1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return assignments;
-    }
-    
-    public static int updateCourseGradesMP1(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP1)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesMP2(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP2)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesMP3(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP3)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-        	   System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesMP4(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP4)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-        	   System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesMidterm(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MIDTERM)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-        	   System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesFinal(int courseId, int studentId, double average) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_FINAL)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-        	   System.out.println("\nsql error\n");
-               return -1;
-           }
+     	return -1;
     }
     
-    public static Object getMP1Grade(int courseId, int studentId) {
+    public static int assignmentGradesRows() {
     	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP1_GRADE)) {
+    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.ROWS_IN_ASSIGNMENT_GRADES)) {
                   
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
     		try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getObject("mp1");
+                    return rs.getInt("count(*)");
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return -1;
+        return 1;
     }
     
-    public static Object getMP2Grade(int courseId, int studentId) {
+    public static int previousGrade(int courseId, int assignmentId, int studentId) {
     	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP2_GRADE)) {
+    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.PREVIOUS_GRADE)) {
                   
     		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
+    		stmt.setInt(2, assignmentId);
+    		stmt.setInt(3, studentId);
     		try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getObject("mp2");
+                    return rs.getInt("points_earned");
                 }
             }
         } catch (SQLException e) {
@@ -1213,15 +1350,16 @@ public class PowerSchool {
         return -1;
     }
     
-    public static Object getMP3Grade(int courseId, int studentId) {
+    public static int checkGrade(int courseId, int assignmentId, int studentId) {
     	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP3_GRADE)) {
+    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.FIND_GRADE)) {
                   
     		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
+    		stmt.setInt(2, assignmentId);
+    		stmt.setInt(3, studentId);
     		try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getObject("mp3");
+                    return rs.getInt("is_graded");
                 }
             }
         } catch (SQLException e) {
@@ -1231,79 +1369,102 @@ public class PowerSchool {
         return -1;
     }
     
-    public static Object getMP4Grade(int courseId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP4_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("mp4");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Changes a student's grade on an assignment, then applies the difference to the
+     * student's running total and marking period grade in the same transaction.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param studentId the student's ID
+     * @param pointsEarned the new points earned
+     * @return 1 if the grade was changed; -1 otherwise
+     */
 
-        return -1;
+    public static int updateAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned) {
+        return await(updateAssignmentGradeAsync(courseId, assignmentId, studentId, pointsEarned));
     }
-    
-    public static Object getMidtermGrade(int courseId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MIDTERM_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("midterm_exam");
+
+    /**
+     * Queues a change to a student's grade on an assignment (see updateAssignmentGrade)
+     * without waiting for it to be written.
+     *
+     * @param courseId the course's ID
+     * @param assignmentId the assignment's ID
+     * @param studentId the student's ID
+     * @param pointsEarned the new points earned
+     * @return 1 once the grade has been committed, or -1 if it could not be changed
+     */
+
+    public static CompletableFuture<Integer> updateAssignmentGradeAsync(int courseId, int assignmentId, int studentId,
+            double pointsEarned) {
+
+        return submit(conn -> {
+            try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_GRADE);
+                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_ASSIGNMENT_GRADE)) {
+
+                double previousPoints;
+                double pointsPossible;
+                boolean graded;
+
+                select.setInt(1, courseId);
+                select.setInt(2, assignmentId);
+                select.setInt(3, studentId);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        return -1;
+                    }
+                    previousPoints = rs.getDouble("points_earned");
+                    pointsPossible = rs.getDouble("points_possible");
+                    graded = rs.getInt("is_graded") == 1;
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
 
-        return -1;
-    }
-    
-    public static Object getFinalGrade(int courseId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_FINAL_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("final_exam");
+                stmt.setDouble(1, pointsEarned);
+                stmt.setInt(2, courseId);
+                stmt.setInt(3, assignmentId);
+                stmt.setInt(4, studentId);
+
+                int markingPeriod = getMarkingPeriod(conn, courseId, assignmentId);
+
+                if (markingPeriod != -1 && stmt.executeUpdate() == 1) {
+                    if (graded) {
+                        double difference = pointsEarned - previousPoints;
+
+                        updateGradeAggregate(conn, courseId, studentId, markingPeriod,
+                            difference, 0, difference * 100 / pointsPossible, 0);
+                        refreshGrades(conn, courseId, studentId, markingPeriod);
+                    }
+
+                    CLASS_RANKS.flush(conn);
+                    return 1;
+                } else {
+                    conn.rollback();
+                    return -1;
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return -1;
+        }).exceptionally(PowerSchool::failed);
     }
     
-    public static int updateCourseGrade(int courseId, int studentId, double grade) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, grade);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
+    /**
+     * Recomputes a student's marking period (or exam) grade in a course from the
+     * running totals, then the course grade and GPA that depend on it, in one
+     * transaction.
+     *
+     * @param courseId the course's ID
+     * @param studentId the student's ID
+     * @param markingPeriod the marking period (1-4), or 5 for the midterm and 6 for the final
+     * @return 1 if the grades were updated; -1 otherwise
+     */
+
+    public static int refreshGrades(int courseId, int studentId, int markingPeriod) {
+        return await(submit(conn -> {
+            if (refreshGrades(conn, courseId, studentId, markingPeriod) == 1) {
+                CLASS_RANKS.flush(conn);
+                return 1;
+            } else {
+                conn.rollback();
+                return -1;
+            }
+        }));
     }
     
     public static int getStudentIdByUserId(User activeUser) {
@@ -1323,117 +1484,130 @@ public class PowerSchool {
      	return -1;
     }
     
-    public static ArrayList<String> getGradeOrder(int gradeLevel) {
-    	ArrayList<String> gradeOrder = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_GRADE_AND_STUDENT_ID)) {
-     			
-     		stmt.setInt(1, gradeLevel);
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("gpa");
-                  		   if(result == null) {
-                  			 gradeOrder.add(rs.getString("first_name"));
-                  			gradeOrder.add(rs.getString("last_name"));
-                  			 gradeOrder.add("--");
-                  		   }else {
-                  			 gradeOrder.add(rs.getString("first_name"));
-                  			gradeOrder.add(rs.getString("last_name"));
-                  			 gradeOrder.add(result);
-                  		   }
-     					}
-     				}
-     			
-     			return gradeOrder;
+    /**
+     * Retrieves every teacher (with department title), ordered by name.
+     *
+     * @return the teachers
+     */
+
+    public static ArrayList<TeacherSummary> getTeachers() {
+        try {
+            return new ArrayList<TeacherSummary>(getCatalog().teachers());
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return gradeOrder;
-     }
-    
-    public static ArrayList<Object> getCourseGrades(int studentId) {
-    	ArrayList<Object> courseGrades = new ArrayList<Object>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ALL_GRADES_FOR_STUDENT)) {
-     			
-     			stmt.setInt(1, studentId);
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("grade");
-                  		   if(result == null) {
-                  			 courseGrades.add(-1.0);
-                  		   }else {
-                  			courseGrades.add(rs.getObject("grade"));
-                  		   }
-     					}
-     				}
-     			
-     			return courseGrades;
+
+        return new ArrayList<TeacherSummary>();
+    }
+
+    /**
+     * Retrieves the teachers in a department, ordered by name.
+     *
+     * @param departmentId the department's ID
+     * @return the teachers
+     */
+
+    public static ArrayList<TeacherSummary> getTeachersWithDepartmentId(int departmentId) {
+        try {
+            return new ArrayList<TeacherSummary>(getCatalog().teachers(departmentId));
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return courseGrades;
-     }
-    
-    public static ArrayList<Integer> getCourseIds(int studentId) {
-    	ArrayList<Integer> courseIds = new ArrayList<Integer>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_BY_STUDENT)) {
-     			
-     			stmt.setInt(1, studentId);
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-     						courseIds.add(rs.getInt("course_id"));
-     					}
-     				}
-     			
-     			return courseIds;
+
+        return new ArrayList<TeacherSummary>();
+    }
+
+    /**
+     * Retrieves every student, ordered by name.
+     *
+     * @return the students
+     */
+
+    public static ArrayList<StudentSummary> getStudents() {
+        return query(QueryUtils.GET_STUDENTS, StudentSummary::mapper);
+    }
+
+    /**
+     * Retrieves the students in a grade level, ordered by GPA (highest first).
+     *
+     * @param gradeLevel the grade level (9 through 12)
+     * @return the students
+     */
+
+    public static ArrayList<StudentSummary> getStudentsByGrade(int gradeLevel) {
+        return query(QueryUtils.GET_STUDENTS_BY_GRADE, StudentSummary::mapper, gradeLevel);
+    }
+
+    /**
+     * Retrieves a student's class rank from the in-memory rank index.
+     *
+     * @param studentId the student's ID
+     * @return the class rank (0 if the student has no GPA; -1 on error)
+     */
+
+    public static int getClassRank(int studentId) {
+        try (Connection conn = getConnection()) {
+            return CLASS_RANKS.rank(conn, studentId);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return courseIds;
-     }
-    
-    public static ArrayList<Integer> getCreditHours(ArrayList<Integer> courseIds) {
-    	ArrayList<Integer> creditHours = new ArrayList<Integer>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_CREDIT_HOURS)) {
-     			
-     		for(int i = 0; i < courseIds.size(); i++) {
-     			stmt.setInt(1, courseIds.get(i));
- 				try (ResultSet rs = stmt.executeQuery()) {
- 					while (rs.next()) {
- 						creditHours.add(rs.getInt("credit_hours"));
- 					}
- 				}
-     		}
-     		return creditHours;
+
+        return -1;
+    }
+
+    /**
+     * Retrieves the highest-ranked students in a grade level from the in-memory rank
+     * index.
+     *
+     * @param gradeLevel the grade level (9 through 12)
+     * @param count the maximum number of students to return
+     * @return the students' IDs, highest GPA first
+     */
+
+    public static ArrayList<Integer> getTopStudents(int gradeLevel, int count) {
+        try (Connection conn = getConnection()) {
+            return CLASS_RANKS.top(conn, gradeLevel, count);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return creditHours;
-     }
-    
-    public static int updateGPA(double gpa, int studentId) {
-        try (Connection conn = getConnection();
-        	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_GPA)) {
 
-            conn.setAutoCommit(false);
-            stmt.setDouble(1, gpa);
-            stmt.setInt(2, studentId);
+        return new ArrayList<Integer>();
+    }
 
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return 1;
-            } else {
-                conn.rollback();
-                return -1;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Retrieves the students enrolled in a course, along with their course grades.
+     *
+     * @param courseId the course's ID
+     * @return the roster, ordered by name
+     */
 
-            return -1;
+    public static ArrayList<RosterEntry> getRoster(int courseId) {
+        return query(QueryUtils.GET_ROSTER, RosterEntry::mapper, courseId);
+    }
+
+    /**
+     * Retrieves a student's course grades.
+     *
+     * @param studentId the student's ID
+     * @return the course grades (-1.0 for courses that have not been graded)
+     */
+
+    public static double[] getCourseGrades(int studentId) {
+        ArrayList<Double> grades = query(QueryUtils.GET_ALL_GRADES_FOR_STUDENT, rs -> {
+            int grade = rs.findColumn("grade");
+
+            return row -> {
+                double value = row.getDouble(grade);
+                return row.wasNull() ? -1.0 : value;
+            };
+        }, studentId);
+
+        double[] courseGrades = new double[grades.size()];
+        for (int i = 0; i < courseGrades.length; i++) {
+            courseGrades[i] = grades.get(i);
         }
+
+        return courseGrades;
     }
     
 }
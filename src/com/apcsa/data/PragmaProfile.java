@@ -0,0 +1,153 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class PragmaProfile {
+
+    /*
+     * Favors durability: every commit is synced to disk, but readers no longer block
+     * the writer (and vice versa) thanks to write-ahead logging.
+     */
+
+    public static final PragmaProfile DURABLE =
+        new PragmaProfile("durable", "WAL", "FULL", -8000, 0, "DEFAULT", 5000);
+
+    /*
+     * Favors throughput: commits are only synced at checkpoints (a power loss may
+     * roll back the most recent transactions, but never corrupts the database),
+     * with a larger page cache, memory-mapped reads, and in-memory temp tables.
+     */
+
+    public static final PragmaProfile THROUGHPUT =
+        new PragmaProfile("throughput", "WAL", "NORMAL", -65536, 268435456L, "MEMORY", 10000);
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeout;
+    private final boolean queryOnly;
+
+    /**
+     * Creates an instance of the PragmaProfile class.
+     *
+     * @param name the profile name
+     * @param journalMode the journal_mode pragma (e.g., WAL, DELETE)
+     * @param synchronous the synchronous pragma (OFF, NORMAL, FULL, or EXTRA)
+     * @param cacheSize the cache_size pragma (pages if positive, KiB if negative)
+     * @param mmapSize the mmap_size pragma in bytes (0 disables memory-mapped I/O)
+     * @param tempStore the temp_store pragma (DEFAULT, FILE, or MEMORY)
+     * @param busyTimeout the busy_timeout pragma in milliseconds
+     */
+
+    public PragmaProfile(String name, String journalMode, String synchronous, int cacheSize,
+            long mmapSize, String tempStore, int busyTimeout) {
+
+        this(name, journalMode, synchronous, cacheSize, mmapSize, tempStore, busyTimeout, false);
+    }
+
+    private PragmaProfile(String name, String journalMode, String synchronous, int cacheSize,
+            long mmapSize, String tempStore, int busyTimeout, boolean queryOnly) {
+
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeout = busyTimeout;
+        this.queryOnly = queryOnly;
+    }
+
+    /**
+     * Retrieves a preset profile by name.
+     *
+     * @param name the profile name (durable or throughput)
+     * @return the matching profile
+     * @throws IllegalArgumentException if no preset has that name
+     */
+
+    public static PragmaProfile forName(String name) {
+        if (DURABLE.name.equalsIgnoreCase(name)) {
+            return DURABLE;
+        } else if (THROUGHPUT.name.equalsIgnoreCase(name)) {
+            return THROUGHPUT;
+        }
+
+        throw new IllegalArgumentException("Unknown pragma profile: " + name);
+    }
+
+    /**
+     * Builds the profile selected by the powerschool.profile system property
+     * (durable by default), with individual pragmas overridden by any
+     * powerschool.pragma.* system properties.
+     *
+     * @return the configured profile
+     */
+
+    public static PragmaProfile fromSystemProperties() {
+        PragmaProfile preset = forName(System.getProperty("powerschool.profile", DURABLE.name));
+
+        return new PragmaProfile(preset.name,
+            System.getProperty("powerschool.pragma.journal_mode", preset.journalMode),
+            System.getProperty("powerschool.pragma.synchronous", preset.synchronous),
+            Integer.getInteger("powerschool.pragma.cache_size", preset.cacheSize),
+            Long.getLong("powerschool.pragma.mmap_size", preset.mmapSize),
+            System.getProperty("powerschool.pragma.temp_store", preset.tempStore),
+            Integer.getInteger("powerschool.pragma.busy_timeout", preset.busyTimeout)
+        );
+    }
+
+    /**
+     * Derives a profile for connections that only read. It applies the same pragmas and
+     * adds query_only, so any write attempted through the connection fails.
+     *
+     * @return the read-only profile
+     */
+
+    public PragmaProfile queryOnly() {
+        return new PragmaProfile(name, journalMode, synchronous, cacheSize, mmapSize, tempStore, busyTimeout, true);
+    }
+
+    /**
+     * Applies the profile to a newly opened connection.
+     *
+     * @param conn the database connection
+     * @throws SQLException
+     */
+
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeout);
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+
+            if (queryOnly) {
+                stmt.execute("PRAGMA query_only = 1");      // last, so the pragmas above can still switch journal modes
+            }
+        }
+    }
+
+    /**
+     * @return name
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (journal_mode=" + journalMode + ", synchronous=" + synchronous +
+            ", cache_size=" + cacheSize + ", mmap_size=" + mmapSize +
+            ", temp_store=" + tempStore + ", busy_timeout=" + busyTimeout +
+            (queryOnly ? ", query_only=1" : "") + ")";
+    }
+}
@@ -11,7 +11,56 @@ public class QueryUtils {
     public static final String SETUP_SQL =
         "SELECT COUNT(name) AS names FROM sqlite_master " +
             "WHERE type = 'table' " +
-        "AND name NOT LIKE 'sqlite_%'";
+        "AND name IN ('users', 'departments', 'administrators', 'teachers', 'students', " +
+            "'courses', 'course_grades', 'assignments', 'assignment_grades')";
+    
+    /*
+     * Creates the table that records which schema migrations have been applied.
+     */
+    
+    public static final String CREATE_SCHEMA_VERSION =
+        "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INTEGER PRIMARY KEY, " +
+            "description TEXT NOT NULL, " +
+            "applied_at TEXT NOT NULL)";
+    
+    /*
+     * Retrieves the highest applied schema migration.
+     */
+    
+    public static final String GET_SCHEMA_VERSION =
+        "SELECT IFNULL(MAX(version), 0) AS version FROM schema_version";
+    
+    /*
+     * Records an applied schema migration.
+     */
+    
+    public static final String ADD_SCHEMA_VERSION =
+        "INSERT INTO schema_version (version, description, applied_at) " +
+            "VALUES (?, ?, ?)";
+    
+    /*
+     * Forgets all applied migrations (after the base tables are rebuilt).
+     */
+    
+    public static final String DROP_SCHEMA_VERSION =
+        "DROP TABLE IF EXISTS schema_version";
+    
+    /*
+     * Advances a sequence past a newly allocated block of ids.
+     */
+    
+    public static final String ADVANCE_SEQUENCE =
+        "UPDATE sequences SET next_value = next_value + ? " +
+            "WHERE name = ?";
+    
+    /*
+     * Retrieves the next unallocated id in a sequence.
+     */
+    
+    public static final String GET_SEQUENCE_VALUE =
+        "SELECT next_value FROM sequences " +
+            "WHERE name = ?";
     
     /*
      * Updates the last login timestamp each time a user logs into the system.
@@ -19,8 +68,17 @@ public class QueryUtils {
 
     public static final String LOGIN_SQL =
         "SELECT * FROM users " +
-            "WHERE username = ?" +
-        "AND auth = ?";
+            "WHERE username = ?";
+    
+    /*
+     * Replaces a password hash, unless the password was changed in the meantime.
+     */
+    
+    public static final String REHASH_PASSWORD =
+        "UPDATE users " +
+            "SET auth = ? " +
+        "WHERE username = ? " +
+            "AND auth = ?";
     
     /*
      * Updates the last login timestamp each time a user logs into the system.
@@ -64,40 +122,15 @@ public class QueryUtils {
     		"SELECT auth FROM users " +
     				"WHERE user_id = ?";
     
-    public static final String GET_COURSE_ID =
-    		"SELECT course_id FROM course_grades " +
-    			"WHERE student_id = ?";
-    
-    public static final String GET_COURSE_NAME = 
-    		"SELECT title FROM courses " + 
-    				"WHERE course_id = ?";
-    
-    public static final String GET_COURSE_GRADE =
-    		"SELECT grade FROM course_grades " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
-    
     public static final String GET_STUDENT_FIRSTNAME =
     		"SELECT first_name FROM students " +
     				"WHERE user_id = ?";
     
-    public static final String GET_COURSE_NUMBER = 
-    		"SELECT course_no FROM courses " +
-    				"WHERE course_id = ?";
-    
     public static final String GET_ASSIGNMENT_TITLE =
     		"SELECT title FROM assignments " +
     				"WHERE course_id = ?" +
     				"AND marking_period = ?";
     
-    public static final String GET_COURSES =
-    		"SELECT course_no FROM courses " +
-    				"WHERE department_id = ?";
-    
-    public static final String GET_COURSE_ID_FROM_DEPARTMENT_ID = 
-    		"SELECT course_id FROM courses " +
-    				"WHERE course_no = ?";
-    
     public static final String ADD_ASSIGNMENT = 
     		"INSERT INTO assignments " +
     	            "VALUES(?, ?, ?, ?, ?, ?, ?)";
@@ -109,82 +142,63 @@ public class QueryUtils {
     				"AND title = ?";
     
     public static final String DELETE_ASSIGNMENT_GRADE = 
-    		"DELETE FROM assignments " +
-    				"WHERE assignment_id = ?";
+    		"DELETE FROM assignment_grades " +
+    				"WHERE course_id = ? " +
+    				"AND assignment_id = ?";
     
-    public static final String PREVIOUS_ASSIGNMENT_ID =
-    		"SELECT count(*) FROM assignments ";
+    public static final String GET_ASSIGNMENT_MARKING_PERIOD =
+    		"SELECT marking_period FROM assignments " +
+    				"WHERE course_id = ? " +
+    				"AND assignment_id = ?";
     
     public static final String GET_ASSIGNMENTS = 
     		"SELECT title FROM assignments " +
     				"WHERE course_id = ?" +
     				"AND marking_period = ?";
     
-    public static final String GET_ASSIGNMENT_IDS =
-    		"SELECT assignment_id FROM assignments ";
-    
     public static final String GET_POINT_VALUE =
     		"SELECT point_value FROM assignments " +
     				"WHERE title = ?";
     
-    public static final String GET_TEACHERS =
-    		"SELECT first_name, last_name FROM teachers ";
-    
-    public static final String GET_DEPARTMENT_ID = 
-    		"SELECT department_id FROM teachers " +
-    			"WHERE first_name = ?";
+    public static final String GET_DEPARTMENTS =
+    		"SELECT department_id, title FROM departments " +
+    		"ORDER BY department_id";
     
-    public static final String GET_DEPARTMENT_TITLE = 
-    		"SELECT title FROM departments " +
-    				"WHERE department_id = ?";
+    public static final String GET_COURSE_CATALOG =
+    		"SELECT course_id, department_id, course_no, title FROM courses " +
+    		"ORDER BY course_id";
     
-    public static final String GET_ALL_DEPARTMENT_TITLES =
-    		"SELECT title FROM departments ";
-    
-    public static final String GET_TEACHERS_WITH_DEPARTMENT_ID =
-    		"SELECT first_name, last_name FROM teachers " +
-    				"WHERE department_id = ?";
+    public static final String GET_TEACHERS =
+    		"SELECT t.teacher_id, t.first_name, t.last_name, t.department_id, d.title AS department_title " +
+    		"FROM teachers t " +
+    				"LEFT JOIN departments d ON d.department_id = t.department_id " +
+    		"ORDER BY t.last_name, t.first_name";
     
     public static final String GET_STUDENTS =
-    		"SELECT first_name, last_name, graduation FROM students ";
+    		"SELECT student_id, first_name, last_name, graduation, grade_level, gpa, class_rank FROM students " +
+    				"ORDER BY last_name, first_name";
     
     public static final String GET_STUDENTS_BY_GRADE =
-    		"SELECT first_name, last_name, gpa FROM students " +
-    				"WHERE grade_level = ?";
-    
-    public static final String GET_ALL_COURSES = 
-    		"SELECT course_no FROM courses ";
-    
-    public static final String GET_COURSE_ID_FROM_COURSE_NO =
-    		"SELECT course_id FROM courses " +
-    				"WHERE course_no = ?";
+    		"SELECT student_id, first_name, last_name, graduation, grade_level, gpa, class_rank FROM students " +
+    				"WHERE grade_level = ? " +
+    				"ORDER BY gpa DESC, last_name, first_name";
     
-    public static final String GET_STUDENT_ID_FROM_COURSE_ID =
-    		"SELECT student_id FROM course_grades " +
-    				"WHERE course_id = ?";
+    /*
+     * Retrieves the students enrolled in a course along with their course grades.
+     */
     
-    public static final String GET_STUDENTS_BY_STUDENT_ID = 
-    		"SELECT first_name, last_name, gpa FROM students " +
-    				"WHERE student_id = ?";
+    public static final String GET_ROSTER =
+    		"SELECT s.student_id, s.first_name, s.last_name, s.gpa, cg.grade " +
+    		"FROM course_grades cg " +
+    				"JOIN students s ON s.student_id = cg.student_id " +
+    		"WHERE cg.course_id = ? " +
+    		"ORDER BY s.last_name, s.first_name";
     
     public static final String UPDATE_PASSWORD_AND_TIME =
             "UPDATE users " +
                 "SET auth = ? , last_login = ? " +
             "WHERE username = ?";
     
-    public static final String GET_STUDENT_GRADE =
-    		"SELECT grade FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    
-    public static final String GET_STUDENTS_FIRST_NAMES = 
-    		"SELECT first_name FROM students " +
-    				"WHERE student_id = ?";
-    
-    public static final String GET_STUDENTS_LAST_NAMES = 
-    		"SELECT last_name FROM students " +
-    				"WHERE student_id = ?";
-    
     public static final String ADD_ASSIGNMENT_GRADE =
             "INSERT INTO assignment_grades " +
                 "VALUES(?, ?, ?, ?, ?, ?)";
@@ -204,6 +218,39 @@ public class QueryUtils {
     				"AND assignment_id = ?" +
     				"AND student_id = ?";
     
+    public static final String GET_ASSIGNMENT_GRADES =
+    		"SELECT student_id, points_earned, points_possible, is_graded FROM assignment_grades " +
+    				"WHERE course_id = ? " +
+    				"AND assignment_id = ?";
+    
+    public static final String GET_ASSIGNMENT_GRADE =
+    		"SELECT student_id, points_earned, points_possible, is_graded FROM assignment_grades " +
+    				"WHERE course_id = ? " +
+    				"AND assignment_id = ? " +
+    				"AND student_id = ?";
+    
+    /*
+     * Creates an empty running total for a student's marking period in a course.
+     */
+    
+    public static final String ADD_GRADE_AGGREGATE =
+    		"INSERT OR IGNORE INTO grade_aggregates (course_id, student_id, marking_period) " +
+    				"VALUES (?, ?, ?)";
+    
+    /*
+     * Applies the change from one assignment grade write to a running total.
+     */
+    
+    public static final String UPDATE_GRADE_AGGREGATE =
+    		"UPDATE grade_aggregates " +
+    				"SET points_earned = points_earned + ?, " +
+    				"points_possible = points_possible + ?, " +
+    				"percent_sum = percent_sum + ?, " +
+    				"graded = graded + ? " +
+    				"WHERE course_id = ? " +
+    				"AND student_id = ? " +
+    				"AND marking_period = ?";
+    
     public static final String FIND_GRADE =
     		"SELECT is_graded FROM assignment_grades " + 
     				"WHERE course_id = ? " + 
@@ -217,74 +264,27 @@ public class QueryUtils {
     				"AND assignment_id = ?" +
     				"AND student_id = ?";
     
-    public static final String UPDATE_COURSE_MP1 = 
-    		"UPDATE course_grades " +
-    				"SET mp1 = ? " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    
-    public static final String UPDATE_COURSE_MP2 = 
-    		"UPDATE course_grades " +
-    				"SET mp2 = ? " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
+    /*
+     * Refreshes a student's marking period (or exam) grade in a course from the
+     * running total: the mean of the percentages earned on the graded assignments in
+     * that marking period, or NULL if none have been graded. Parameters are the
+     * course and student IDs.
+     */
     
-    public static final String UPDATE_COURSE_MP3 = 
-    		"UPDATE course_grades " +
-    				"SET mp3 = ? " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
+    public static final String UPDATE_COURSE_MP1 = updateMarkingPeriod("mp1", 1);
     
-    public static final String UPDATE_COURSE_MP4 = 
-    		"UPDATE course_grades " +
-    				"SET mp4 = ? " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
+    public static final String UPDATE_COURSE_MP2 = updateMarkingPeriod("mp2", 2);
     
-    public static final String UPDATE_COURSE_MIDTERM = 
-    		"UPDATE course_grades " +
-    				"SET midterm_exam = ? " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
+    public static final String UPDATE_COURSE_MP3 = updateMarkingPeriod("mp3", 3);
     
-    public static final String UPDATE_COURSE_FINAL = 
-    		"UPDATE course_grades " +
-    				"SET final_exam = ? " +
-    				"WHERE course_id = ?" +
-    				"AND student_id = ?";
+    public static final String UPDATE_COURSE_MP4 = updateMarkingPeriod("mp4", 4);
     
-    public static final String GET_GRADES = 
-    		"SELECT points_earned, points_possible FROM assignment_grades " +
-    				"WHERE course_id = ? " +
-    				"AND assignment_id = ?" + 
-    				"AND student_id = ? ";
+    public static final String UPDATE_COURSE_MIDTERM = updateMarkingPeriod("midterm_exam", 5);
     
-    public static final String GET_ASSIGNMENT_BY_MP =
-    		"SELECT assignment_id FROM assignments " +
-    				"WHERE marking_period = ?";
+    public static final String UPDATE_COURSE_FINAL = updateMarkingPeriod("final_exam", 6);
     
-    public static final String GET_MP1_GRADE = 
-    		"SELECT mp1 FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    public static final String GET_MP2_GRADE = 
-    		"SELECT mp2 FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    public static final String GET_MP3_GRADE = 
-    		"SELECT mp3 FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    public static final String GET_MP4_GRADE = 
-    		"SELECT mp4 FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    public static final String GET_MIDTERM_GRADE = 
-    		"SELECT midterm_exam FROM course_grades " +
-    				"WHERE course_id = ? " +
-    				"AND student_id = ?";
-    public static final String GET_FINAL_GRADE = 
-    		"SELECT final_exam FROM course_grades " +
+    public static final String GET_MARKING_PERIOD_GRADES =
+    		"SELECT mp1, mp2, midterm_exam, mp3, mp4, final_exam, grade FROM course_grades " +
     				"WHERE course_id = ? " +
     				"AND student_id = ?";
     
@@ -298,25 +298,158 @@ public class QueryUtils {
     		"SELECT student_id FROM students " +
     				"WHERE user_id = ?";
     		
-    public static final String GET_GRADE_AND_STUDENT_ID = 
-    		"SELECT first_name, last_name, gpa FROM students " +
-    				"WHERE grade_level = ? " +
-    				"ORDER BY gpa DESC";
-    
     public static final String GET_ALL_GRADES_FOR_STUDENT =
     		"SELECT grade FROM course_grades " +
     				"WHERE student_id = ?";
     
-    public static final String GET_COURSE_ID_BY_STUDENT = 
-    		"SELECT course_id FROM course_grades " +
-    				"WHERE student_id = ?";
-    
     public static final String GET_CREDIT_HOURS = 
     		"SELECT credit_hours FROM courses " +
     				"WHERE course_id = ?";
     
+    /*
+     * Retrieves a student's courses, marking period grades, and teachers in one pass.
+     */
+    
+    public static final String GET_TRANSCRIPT =
+    		"SELECT c.course_id, c.course_no, c.title, c.credit_hours, " +
+    				"cg.mp1, cg.mp2, cg.midterm_exam, cg.mp3, cg.mp4, cg.final_exam, cg.grade, " +
+    				"t.first_name AS teacher_first_name, t.last_name AS teacher_last_name " +
+    		"FROM course_grades cg " +
+    				"JOIN courses c ON c.course_id = cg.course_id " +
+    				"LEFT JOIN teachers t ON t.teacher_id = c.teacher_id " +
+    		"WHERE cg.student_id = ? " +
+    		"ORDER BY cg.course_id";
+    
+    public static final String GET_GRADE_LEVEL_TRANSCRIPTS =
+    		"SELECT cg.student_id, c.course_id, c.course_no, c.title, c.credit_hours, " +
+    				"cg.mp1, cg.mp2, cg.midterm_exam, cg.mp3, cg.mp4, cg.final_exam, cg.grade, " +
+    				"t.first_name AS teacher_first_name, t.last_name AS teacher_last_name " +
+    		"FROM course_grades cg " +
+    				"JOIN students s ON s.student_id = cg.student_id " +
+    				"JOIN courses c ON c.course_id = cg.course_id " +
+    				"LEFT JOIN teachers t ON t.teacher_id = c.teacher_id " +
+    		"WHERE s.grade_level = ? " +
+    		"ORDER BY cg.student_id, cg.course_id";
+    
+    /*
+     * Creates empty GPA totals for a student.
+     */
+    
+    public static final String ADD_GPA_TOTAL =
+    		"INSERT OR IGNORE INTO gpa_totals (student_id) " +
+    				"VALUES (?)";
+    
+    /*
+     * Applies the change from one course grade to a student's GPA totals.
+     */
+    
+    public static final String UPDATE_GPA_TOTAL =
+    		"UPDATE gpa_totals " +
+    				"SET grade_points = grade_points + ?, " +
+    				"credit_hours = credit_hours + ? " +
+    				"WHERE student_id = ?";
+    
+    /*
+     * Rewrites a student's GPA from the running totals (-1.0 if nothing is graded).
+     */
+    
     public static final String UPDATE_GPA = 
     		"UPDATE students " +
-    				"SET gpa = ?" +
+    				"SET gpa = (" +
+    					"SELECT CASE WHEN t.credit_hours > 0 THEN ROUND(t.grade_points / t.credit_hours, 2) ELSE -1.0 END " +
+    					"FROM gpa_totals t " +
+    					"WHERE t.student_id = students.student_id) " +
     				"WHERE student_id = ?";
-}
\ No newline at end of file
+    
+    public static final String GET_STUDENT_RANKINGS =
+    		"SELECT student_id, grade_level, gpa, class_rank FROM students";
+    
+    public static final String GET_STUDENT_RANKING =
+    		"SELECT student_id, grade_level, gpa, class_rank FROM students " +
+    				"WHERE student_id = ?";
+    
+    public static final String UPDATE_CLASS_RANK =
+    		"UPDATE students " +
+    				"SET class_rank = ? " +
+    				"WHERE student_id = ?";
+    
+    public static final String GET_COURSE_BY_COURSE_NO =
+    		"SELECT course_id, department_id FROM courses " +
+    				"WHERE course_no = ?";
+    
+    public static final String GET_ASSIGNMENT_BY_TITLE =
+    		"SELECT assignment_id, marking_period, point_value FROM assignments " +
+    				"WHERE course_id = ? " +
+    				"AND title = ?";
+    
+    public static final String GET_STUDENT_ID_BY_USERNAME =
+    		"SELECT s.student_id FROM students s " +
+    				"JOIN users u ON u.user_id = s.user_id " +
+    				"WHERE u.username = ?";
+    
+    public static final String CHECK_ENROLLMENT =
+    		"SELECT 1 FROM course_grades " +
+    				"WHERE course_id = ? " +
+    				"AND student_id = ?";
+    
+    /*
+     * Exports take the same filter parameters in the same order (course_id, then
+     * department_id, grade_level, and marking_period), each bound twice; a null
+     * filter matches every row.
+     */
+    
+    public static final String EXPORT_COURSE_GRADES =
+    		"SELECT c.course_no, c.title AS course_title, d.title AS department, s.student_id, s.last_name, s.first_name, s.grade_level, " +
+    				"cg.mp1, cg.mp2, cg.mp3, cg.mp4, cg.midterm_exam, cg.final_exam, cg.grade " +
+    		"FROM course_grades cg " +
+    				"JOIN courses c ON c.course_id = cg.course_id " +
+    				"JOIN departments d ON d.department_id = c.department_id " +
+    				"JOIN students s ON s.student_id = cg.student_id " +
+    		"WHERE (? IS NULL OR cg.course_id = ?) " +
+    				"AND (? IS NULL OR c.department_id = ?) " +
+    				"AND (? IS NULL OR s.grade_level = ?) " +
+    				"AND (? IS NULL OR CASE ? WHEN 1 THEN cg.mp1 WHEN 2 THEN cg.mp2 WHEN 3 THEN cg.mp3 WHEN 4 THEN cg.mp4 " +
+    						"WHEN 5 THEN cg.midterm_exam WHEN 6 THEN cg.final_exam END IS NOT NULL) " +
+    		"ORDER BY cg.course_id, cg.student_id";
+    
+    public static final String EXPORT_ASSIGNMENT_GRADES =
+    		"SELECT c.course_no, a.marking_period, a.title AS assignment, s.student_id, s.last_name, s.first_name, " +
+    				"ag.points_earned, ag.points_possible, ag.is_graded " +
+    		"FROM assignment_grades ag " +
+    				"JOIN assignments a ON a.course_id = ag.course_id AND a.assignment_id = ag.assignment_id " +
+    				"JOIN courses c ON c.course_id = ag.course_id " +
+    				"JOIN students s ON s.student_id = ag.student_id " +
+    		"WHERE (? IS NULL OR ag.course_id = ?) " +
+    				"AND (? IS NULL OR c.department_id = ?) " +
+    				"AND (? IS NULL OR s.grade_level = ?) " +
+    				"AND (? IS NULL OR a.marking_period = ?) " +
+    		"ORDER BY ag.course_id, ag.assignment_id, ag.student_id";
+    
+    public static final String EXPORT_STUDENTS =
+    		"SELECT s.student_id, u.username, s.last_name, s.first_name, s.graduation, s.grade_level, s.gpa, s.class_rank " +
+    		"FROM students s " +
+    				"JOIN users u ON u.user_id = s.user_id " +
+    		"WHERE (? IS NULL OR EXISTS (" +
+    					"SELECT 1 FROM course_grades cg WHERE cg.student_id = s.student_id AND cg.course_id = ?)) " +
+    				"AND (? IS NULL OR EXISTS (" +
+    					"SELECT 1 FROM course_grades cg JOIN courses c ON c.course_id = cg.course_id " +
+    					"WHERE cg.student_id = s.student_id AND c.department_id = ?)) " +
+    				"AND (? IS NULL OR s.grade_level = ?) " +
+    		"ORDER BY s.student_id";
+    
+    /*
+     * Builds the marking period recompute for one course_grades column.
+     */
+    
+    private static String updateMarkingPeriod(String column, int markingPeriod) {
+        return "UPDATE course_grades " +
+                    "SET " + column + " = (" +
+                        "SELECT percent_sum / graded FROM grade_aggregates g " +
+                        "WHERE g.course_id = course_grades.course_id " +
+                        "AND g.student_id = course_grades.student_id " +
+                        "AND g.marking_period = " + markingPeriod + " " +
+                        "AND g.graded > 0) " +
+                "WHERE course_id = ? " +
+                "AND student_id = ?";
+    }
+}
@@ -0,0 +1,225 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.apcsa.model.TeacherSummary;
+
+public class ReferenceCatalog {
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @return the current snapshot, or null if none has been loaded since the last invalidation
+     */
+
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Retrieves the current snapshot, loading one if needed. Readers never block on
+     * an existing snapshot; only a load (after startup or an invalidation) is
+     * serialized, so concurrent misses query the database once.
+     *
+     * @param conn a database connection, used only if a snapshot must be loaded
+     * @return the snapshot
+     * @throws SQLException
+     */
+
+    public Snapshot get(Connection conn) throws SQLException {
+        Snapshot current = snapshot;
+
+        return current != null ? current : load(conn);
+    }
+
+    /**
+     * Discards the current snapshot. Call this after any write to the departments,
+     * courses, or teachers tables has been committed; the next lookup reloads them.
+     */
+
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    /*
+     * Loads and publishes a new snapshot (unless another thread already has).
+     */
+
+    private synchronized Snapshot load(Connection conn) throws SQLException {
+        if (snapshot == null) {
+            snapshot = Snapshot.read(conn);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * A department.
+     *
+     * @param departmentId the department's ID
+     * @param title the department's title
+     */
+
+    public record Department(int departmentId, String title) {
+    }
+
+    /**
+     * A course's identifying columns.
+     *
+     * @param courseId the course's ID
+     * @param departmentId the course's department
+     * @param courseNo the course number
+     * @param title the course title
+     */
+
+    public record Course(int courseId, int departmentId, String courseNo, String title) {
+    }
+
+    /**
+     * An immutable copy of the departments, courses, and teachers tables, indexed for
+     * the lookups the menus perform. Snapshots are replaced whole, never modified.
+     */
+
+    public static final class Snapshot {
+
+        private final List<Department> departments;
+        private final List<Course> courses;
+        private final Map<String, Course> coursesByNo;
+        private final Map<Integer, List<Course>> coursesByDepartment;
+        private final List<TeacherSummary> teachers;
+        private final Map<Integer, List<TeacherSummary>> teachersByDepartment;
+
+        private Snapshot(List<Department> departments, List<Course> courses, List<TeacherSummary> teachers) {
+            Map<String, Course> coursesByNo = new HashMap<String, Course>();
+            Map<Integer, List<Course>> coursesByDepartment = new HashMap<Integer, List<Course>>();
+            Map<Integer, List<TeacherSummary>> teachersByDepartment = new HashMap<Integer, List<TeacherSummary>>();
+
+            for (Course course : courses) {
+                coursesByNo.put(course.courseNo(), course);
+                coursesByDepartment.computeIfAbsent(course.departmentId(), id -> new ArrayList<Course>()).add(course);
+            }
+            for (TeacherSummary teacher : teachers) {
+                teachersByDepartment.computeIfAbsent(teacher.departmentId(), id -> new ArrayList<TeacherSummary>()).add(teacher);
+            }
+
+            this.departments = Collections.unmodifiableList(departments);
+            this.courses = Collections.unmodifiableList(courses);
+            this.coursesByNo = Collections.unmodifiableMap(coursesByNo);
+            this.coursesByDepartment = freeze(coursesByDepartment);
+            this.teachers = Collections.unmodifiableList(teachers);
+            this.teachersByDepartment = freeze(teachersByDepartment);
+        }
+
+        /**
+         * @return every department, by ID
+         */
+
+        public List<Department> departments() {
+            return departments;
+        }
+
+        /**
+         * @return every course, by ID
+         */
+
+        public List<Course> courses() {
+            return courses;
+        }
+
+        /**
+         * @param courseNo the course number
+         * @return the course, or null if there is none
+         */
+
+        public Course course(String courseNo) {
+            return coursesByNo.get(courseNo);
+        }
+
+        /**
+         * @param departmentId the department's ID
+         * @return the department's courses, by ID
+         */
+
+        public List<Course> courses(int departmentId) {
+            return coursesByDepartment.getOrDefault(departmentId, Collections.emptyList());
+        }
+
+        /**
+         * @return every teacher, ordered by name
+         */
+
+        public List<TeacherSummary> teachers() {
+            return teachers;
+        }
+
+        /**
+         * @param departmentId the department's ID
+         * @return the department's teachers, ordered by name
+         */
+
+        public List<TeacherSummary> teachers(int departmentId) {
+            return teachersByDepartment.getOrDefault(departmentId, Collections.emptyList());
+        }
+
+        /*
+         * Reads the three tables.
+         */
+
+        private static Snapshot read(Connection conn) throws SQLException {
+            ArrayList<Department> departments = new ArrayList<Department>();
+            ArrayList<Course> courses = new ArrayList<Course>();
+            ArrayList<TeacherSummary> teachers = new ArrayList<TeacherSummary>();
+
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_DEPARTMENTS);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    departments.add(new Department(rs.getInt("department_id"), rs.getString("title")));
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_CATALOG);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    courses.add(new Course(rs.getInt("course_id"), rs.getInt("department_id"),
+                        rs.getString("course_no"), rs.getString("title")));
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_TEACHERS);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                RowMapper<TeacherSummary> mapper = TeacherSummary.mapper(rs);
+
+                while (rs.next()) {
+                    teachers.add(mapper.mapRow(rs));
+                }
+            }
+
+            return new Snapshot(departments, courses, teachers);
+        }
+
+        /*
+         * Makes a map of lists read-only, lists included.
+         */
+
+        private static <K, V> Map<K, List<V>> freeze(Map<K, List<V>> map) {
+            Map<K, List<V>> frozen = new LinkedHashMap<K, List<V>>();
+
+            for (Map.Entry<K, List<V>> entry : map.entrySet()) {
+                frozen.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            }
+
+            return Collections.unmodifiableMap(frozen);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.apcsa.model.StudentSummary;
+import com.apcsa.model.TranscriptEntry;
+
+public class ReportCardGenerator {
+
+    public static final int PARALLELISM = Integer.getInteger("powerschool.reportThreads",
+        Runtime.getRuntime().availableProcessors());
+
+    private static final int LEAF_SIZE = 16;     // report cards rendered per fork/join task
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an instance of the ReportCardGenerator class.
+     *
+     * @param pool the pool report cards are rendered on
+     */
+
+    public ReportCardGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Generates report cards for every student in a grade level. All transcripts are
+     * read in two set-based queries; the report cards are then rendered (and, for
+     * one file per student, written) in parallel.
+     *
+     * @param conn the database connection to read from
+     * @param gradeLevel the grade level (9 through 12)
+     * @param directory the directory report cards are written to (created if needed)
+     * @param combined true for a single file of every report card; false for one file per student
+     * @return a summary of the run
+     * @throws SQLException
+     * @throws IOException
+     */
+
+    public Summary generate(Connection conn, int gradeLevel, Path directory, boolean combined) throws SQLException, IOException {
+        long start = System.nanoTime();
+
+        ArrayList<StudentSummary> students = getStudents(conn, gradeLevel);
+        HashMap<Integer, ArrayList<TranscriptEntry>> transcripts = getTranscripts(conn, gradeLevel);
+
+        Files.createDirectories(directory);
+
+        String[] reportCards = combined ? new String[students.size()] : null;
+
+        try {
+            pool.invoke(new Render(students, transcripts, directory, reportCards, 0, students.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (combined) {
+            Path file = directory.resolve("grade-" + gradeLevel + "-report-cards.txt");
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+                for (String reportCard : reportCards) {
+                    write(channel, reportCard + "\f\n");
+                }
+            }
+        }
+
+        return new Summary(students.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Renders one student's report card.
+     *
+     * @param student the student
+     * @param transcript the student's courses and grades
+     * @return the report card text
+     */
+
+    public static String render(StudentSummary student, List<TranscriptEntry> transcript) {
+        StringBuilder text = new StringBuilder(1024);
+
+        text.append("REPORT CARD\n\n");
+        text.append(student.lastName()).append(", ").append(student.firstName()).append('\n');
+        text.append("Student ID: ").append(student.studentId())
+            .append("   Grade: ").append(student.gradeLevel())
+            .append("   Class of ").append(student.graduation()).append('\n');
+        text.append("GPA: ").append(student.hasGpa() ? String.format("%.2f", student.gpa()) : "--")
+            .append("   Class Rank: ").append(student.classRank() > 0 ? String.valueOf(student.classRank()) : "--")
+            .append("\n\n");
+
+        text.append(String.format("%-8s %-32s %-20s %6s %6s %6s %6s %6s %6s %6s %6s%n",
+            "Course", "Title", "Teacher", "Credit", "MP1", "MP2", "Mid", "MP3", "MP4", "Final", "Grade"));
+
+        for (TranscriptEntry entry : transcript) {
+            String teacher = entry.teacherLastName() == null ? "" : entry.teacherLastName() + ", " + entry.teacherFirstName();
+
+            text.append(String.format("%-8s %-32s %-20s %6.1f %6s %6s %6s %6s %6s %6s %6s%n",
+                entry.courseNo(), entry.title(), teacher, entry.creditHours(),
+                format(entry.mp1()), format(entry.mp2()), format(entry.midtermExam()),
+                format(entry.mp3()), format(entry.mp4()), format(entry.finalExam()),
+                format(entry.grade())));
+        }
+
+        if (transcript.isEmpty()) {
+            text.append("No courses.\n");
+        }
+
+        return text.toString();
+    }
+
+    /*
+     * Formats a nullable grade.
+     */
+
+    private static String format(Double grade) {
+        return grade == null ? "--" : String.format("%.2f", grade);
+    }
+
+    /*
+     * Retrieves the students in a grade level.
+     */
+
+    private static ArrayList<StudentSummary> getStudents(Connection conn, int gradeLevel) throws SQLException {
+        ArrayList<StudentSummary> students = new ArrayList<StudentSummary>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_BY_GRADE)) {
+            stmt.setInt(1, gradeLevel);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<StudentSummary> mapper = StudentSummary.mapper(rs);
+
+                while (rs.next()) {
+                    students.add(mapper.mapRow(rs));
+                }
+            }
+        }
+
+        return students;
+    }
+
+    /*
+     * Retrieves every transcript in a grade level, keyed by student ID.
+     */
+
+    private static HashMap<Integer, ArrayList<TranscriptEntry>> getTranscripts(Connection conn, int gradeLevel) throws SQLException {
+        HashMap<Integer, ArrayList<TranscriptEntry>> transcripts = new HashMap<Integer, ArrayList<TranscriptEntry>>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_GRADE_LEVEL_TRANSCRIPTS)) {
+            stmt.setInt(1, gradeLevel);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<TranscriptEntry> mapper = TranscriptEntry.mapper(rs);
+                int studentId = rs.findColumn("student_id");
+
+                while (rs.next()) {
+                    transcripts.computeIfAbsent(rs.getInt(studentId), id -> new ArrayList<TranscriptEntry>())
+                        .add(mapper.mapRow(rs));
+                }
+            }
+        }
+
+        return transcripts;
+    }
+
+    /*
+     * Writes text to a channel as UTF-8.
+     */
+
+    private static void write(FileChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     *
+     * @param students the number of report cards generated
+     * @param elapsedNanos the time taken
+     */
+
+    public record Summary(int students, long elapsedNanos) {
+
+        /**
+         * @return the report cards generated per second
+         */
+
+        public double studentsPerSecond() {
+            return elapsedNanos == 0 ? 0 : students * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d report cards in %.2f s (%.0f students/s)",
+                students, elapsedNanos / 1_000_000_000.0, studentsPerSecond());
+        }
+    }
+
+    /*
+     * Renders a range of students, splitting in half until the range is small enough.
+     * Each report card is either written to its own file or stored (by index) for the
+     * combined file.
+     */
+
+    private static class Render extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<StudentSummary> students;
+        private final HashMap<Integer, ArrayList<TranscriptEntry>> transcripts;
+        private final Path directory;
+        private final String[] reportCards;
+        private final int from;
+        private final int to;
+
+        Render(List<StudentSummary> students, HashMap<Integer, ArrayList<TranscriptEntry>> transcripts,
+                Path directory, String[] reportCards, int from, int to) {
+
+            this.students = students;
+            this.transcripts = transcripts;
+            this.directory = directory;
+            this.reportCards = reportCards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new Render(students, transcripts, directory, reportCards, from, middle),
+                    new Render(students, transcripts, directory, reportCards, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                StudentSummary student = students.get(i);
+                String reportCard = render(student, transcripts.getOrDefault(student.studentId(), new ArrayList<TranscriptEntry>()));
+
+                if (reportCards != null) {
+                    reportCards[i] = reportCard;
+                } else {
+                    Path file = directory.resolve("report-card-" + student.studentId() + ".txt");
+
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+                        write(channel, reportCard);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.apcsa.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to a typed value. Mappers are created once per
+ * executed statement (by a Factory), which is where column names are resolved to
+ * indexes, so mapping each row only reads columns by position.
+ *
+ * @param <T> the mapped type
+ */
+
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row.
+     *
+     * @param rs the ResultSet, positioned on a row
+     * @return the mapped value
+     * @throws SQLException
+     */
+
+    T mapRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Creates a RowMapper for a freshly executed ResultSet.
+     *
+     * @param <T> the mapped type
+     */
+
+    @FunctionalInterface
+    interface Factory<T> {
+
+        /**
+         * Resolves column indexes and returns a mapper bound to them.
+         *
+         * @param rs the ResultSet, before the first row
+         * @return a mapper for each row of the ResultSet
+         * @throws SQLException
+         */
+
+        RowMapper<T> create(ResultSet rs) throws SQLException;
+    }
+}
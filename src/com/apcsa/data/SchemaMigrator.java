@@ -0,0 +1,164 @@
+package com.apcsa.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class SchemaMigrator {
+
+    private static final Pattern MIGRATION_FILE = Pattern.compile("(\\d+)_(\\w+)\\.sql");
+
+    private final Path directory;
+
+    /**
+     * Creates an instance of the SchemaMigrator class.
+     *
+     * @param directory the directory of numbered migration scripts (e.g., 001_hot_path_indexes.sql)
+     */
+
+    public SchemaMigrator(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates an instance of the SchemaMigrator class for config/migrations.
+     */
+
+    public SchemaMigrator() {
+        this(Paths.get("config/migrations"));
+    }
+
+    /**
+     * Applies, in order, every migration newer than the version recorded in the
+     * schema_version table. Each migration is committed along with the row recording
+     * it, so a failed migration leaves the schema untouched. On a connection whose
+     * commits are deferred (a write on the writer thread, as at startup), every
+     * pending migration commits together with the write, and a failure rolls back
+     * all of them.
+     *
+     * @param conn the database connection
+     * @return the schema version after migrating
+     * @throws IOException if a migration script cannot be read
+     * @throws SQLException if a migration fails
+     */
+
+    public int migrate(Connection conn) throws IOException, SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(QueryUtils.CREATE_SCHEMA_VERSION);
+        }
+
+        int version = getVersion(conn);
+
+        for (Migration migration : findMigrations()) {
+            if (migration.version <= version) {
+                continue;
+            }
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (BufferedReader br = Files.newBufferedReader(migration.path, StandardCharsets.UTF_8);
+                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_SCHEMA_VERSION)) {
+
+                new ScriptRunner(conn).execute(br);
+
+                stmt.setInt(1, migration.version);
+                stmt.setString(2, migration.description);
+                stmt.setString(3, new Timestamp(new Date().getTime()).toString());
+                stmt.executeUpdate();
+
+                conn.commit();
+            } catch (IOException | SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+            version = migration.version;
+        }
+
+        return version;
+    }
+
+    /**
+     * Retrieves the current schema version.
+     *
+     * @param conn the database connection
+     * @return the highest applied migration version (0 if none have been applied)
+     * @throws SQLException
+     */
+
+    public static int getVersion(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_SCHEMA_VERSION);
+             ResultSet rs = stmt.executeQuery()) {
+
+            return rs.next() ? rs.getInt("version") : 0;
+        }
+    }
+
+    /*
+     * Lists the migration scripts in version order.
+     *
+     * @return the migrations
+     * @throws IOException
+     */
+
+    private ArrayList<Migration> findMigrations() throws IOException {
+        ArrayList<Migration> migrations = new ArrayList<Migration>();
+
+        if (!Files.isDirectory(directory)) {
+            return migrations;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = MIGRATION_FILE.matcher(path.getFileName().toString());
+
+                if (matcher.matches()) {
+                    migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), path));
+                }
+            });
+        }
+        migrations.sort((a, b) -> Integer.compare(a.version, b.version));
+
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version == migrations.get(i - 1).version) {
+                throw new IllegalStateException("Duplicate migration version " + migrations.get(i).version + ".");
+            }
+        }
+
+        return migrations;
+    }
+
+    /*
+     * A numbered migration script.
+     */
+
+    private static class Migration {
+
+        private final int version;
+        private final String description;
+        private final Path path;
+
+        Migration(int version, String description, Path path) {
+            this.version = version;
+            this.description = description;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ScriptRunner {
+
+    private static final Pattern INSERT_VALUES = Pattern.compile(
+        "^\\s*(INSERT\\s+(?:OR\\s+\\w+\\s+)?INTO\\s+[^\\s(]+\\s*(?:\\([^()'\"]*\\))?\\s*)VALUES\\s*(\\(.*\\))\\s*$",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Object NOT_A_LITERAL = new Object();
+
+    private final Connection conn;
+    private final int batchSize;
+
+    private PreparedStatement batch;
+    private String batchKey;
+    private int batched;
+    private int executed;
+
+    /**
+     * Creates an instance of the ScriptRunner class. The runner does not manage
+     * transactions; callers should disable autocommit and commit once the script
+     * has run.
+     *
+     * @param conn the database connection to run scripts against
+     * @param batchSize the maximum number of inserts sent per batch
+     */
+
+    public ScriptRunner(Connection conn, int batchSize) {
+        this.conn = conn;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates an instance of the ScriptRunner class with the default batch size.
+     *
+     * @param conn the database connection to run scripts against
+     */
+
+    public ScriptRunner(Connection conn) {
+        this(conn, 1000);
+    }
+
+    /**
+     * Executes every statement in a SQL script, reading the script incrementally.
+     * Runs of single-row INSERT ... VALUES statements into the same table and columns
+     * are rewritten into one prepared statement and sent in batches.
+     *
+     * @param reader the SQL script
+     * @return the number of statements executed
+     * @throws IOException if the script cannot be read
+     * @throws SQLException if a statement fails
+     */
+
+    public int execute(Reader reader) throws IOException, SQLException {
+        executed = 0;
+
+        try (Statement stmt = conn.createStatement()) {
+            StringBuilder sql = new StringBuilder();
+            int state = 0;      // 0 = sql, 1 = 'string', 2 = "identifier", 3 = -- comment, 4 = /* comment */
+            int previous = -1;
+            int c;
+
+            while ((c = reader.read()) != -1) {
+                switch (state) {
+                case 0:
+                    if (c == '\'') {
+                        state = 1;
+                    } else if (c == '"') {
+                        state = 2;
+                    } else if (c == '-' && previous == '-') {
+                        sql.setLength(sql.length() - 1);
+                        state = 3;
+                        previous = -1;
+                        continue;
+                    } else if (c == '*' && previous == '/') {
+                        sql.setLength(sql.length() - 1);
+                        state = 4;
+                        previous = -1;
+                        continue;
+                    } else if (c == ';' && !isOpenTrigger(sql)) {
+                        run(stmt, sql.toString());
+                        sql.setLength(0);
+                        previous = -1;
+                        continue;
+                    }
+                    break;
+                case 1:
+                    if (c == '\'') {
+                        state = 0;      // a doubled '' simply re-enters the string
+                    }
+                    break;
+                case 2:
+                    if (c == '"') {
+                        state = 0;
+                    }
+                    break;
+                case 3:
+                    if (c == '\n') {
+                        state = 0;
+                        sql.append('\n');
+                    }
+                    previous = c;
+                    continue;
+                case 4:
+                    if (c == '/' && previous == '*') {
+                        state = 0;
+                        sql.append(' ');
+                        previous = -1;
+                    } else {
+                        previous = c;
+                    }
+                    continue;
+                default:
+                    break;
+                }
+
+                sql.append((char) c);
+                previous = c;
+            }
+
+            run(stmt, sql.toString());
+            flush();
+        } finally {
+            closeBatch();
+        }
+
+        return executed;
+    }
+
+    /*
+     * Executes one complete statement, batching it if possible.
+     */
+
+    private void run(Statement stmt, String sql) throws SQLException {
+        if (sql.isBlank()) {
+            return;
+        }
+
+        Matcher matcher = INSERT_VALUES.matcher(sql);
+        ArrayList<Object> values = matcher.matches() ? parseTuple(matcher.group(2)) : null;
+
+        if (values == null) {
+            flush();
+            stmt.execute(sql);
+            executed++;
+
+            return;
+        }
+
+        String key = matcher.group(1).strip() + "/" + values.size();
+        if (!key.equals(batchKey)) {
+            flush();
+            closeBatch();
+
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < values.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ", ?");
+            }
+
+            batch = conn.prepareStatement(matcher.group(1) + "VALUES (" + placeholders + ")");
+            batchKey = key;
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+
+            if (value == null) {
+                batch.setNull(i + 1, Types.NULL);
+            } else if (value instanceof Long) {
+                batch.setLong(i + 1, (Long) value);
+            } else if (value instanceof Double) {
+                batch.setDouble(i + 1, (Double) value);
+            } else {
+                batch.setString(i + 1, (String) value);
+            }
+        }
+        batch.addBatch();
+        executed++;
+
+        if (++batched >= batchSize) {
+            flush();
+        }
+    }
+
+    /*
+     * Sends any pending inserts.
+     */
+
+    private void flush() throws SQLException {
+        if (batch != null && batched > 0) {
+            batch.executeBatch();
+        }
+        batched = 0;
+    }
+
+    /*
+     * Releases the current insert statement.
+     */
+
+    private void closeBatch() throws SQLException {
+        if (batch != null) {
+            batch.close();
+        }
+        batch = null;
+        batchKey = null;
+        batched = 0;
+    }
+
+    /*
+     * Determines whether the statement is a CREATE TRIGGER whose BEGIN ... END body
+     * has not been closed yet (semicolons inside the body do not end the statement).
+     */
+
+    private static boolean isOpenTrigger(StringBuilder sql) {
+        String text = sql.toString().strip().toUpperCase(Locale.ROOT);
+
+        if (!text.matches("(?s)CREATE\\s+(TEMP\\s+|TEMPORARY\\s+)?TRIGGER\\b.*")) {
+            return false;
+        }
+
+        return !text.matches("(?s).*\\bEND$");
+    }
+
+    /*
+     * Parses a parenthesized list of literals. Returns null if the list contains
+     * anything other than string, numeric, or NULL literals (or more than one row).
+     */
+
+    private static ArrayList<Object> parseTuple(String tuple) {
+        ArrayList<Object> values = new ArrayList<Object>();
+        int i = 1;      // skip the opening parenthesis
+        int end = tuple.length() - 1;
+
+        while (i < end) {
+            while (i < end && Character.isWhitespace(tuple.charAt(i))) {
+                i++;
+            }
+
+            Object value = NOT_A_LITERAL;
+            char c = tuple.charAt(i);
+
+            if (c == '\'' || c == '"') {
+                StringBuilder text = new StringBuilder();
+                i++;
+
+                while (i < end) {
+                    if (tuple.charAt(i) == c) {
+                        if (i + 1 < end && tuple.charAt(i + 1) == c) {
+                            text.append(c);     // escaped quote
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    text.append(tuple.charAt(i++));
+                }
+
+                if (i >= end) {
+                    return null;
+                }
+                i++;
+                value = text.toString();
+            } else {
+                int start = i;
+                while (i < end && tuple.charAt(i) != ',' && !Character.isWhitespace(tuple.charAt(i))) {
+                    i++;
+                }
+                value = parseBareLiteral(tuple.substring(start, i));
+            }
+
+            if (value == NOT_A_LITERAL) {
+                return null;
+            }
+            values.add(value);
+
+            while (i < end && Character.isWhitespace(tuple.charAt(i))) {
+                i++;
+            }
+            if (i < end) {
+                if (tuple.charAt(i) != ',') {
+                    return null;
+                }
+                i++;
+            }
+        }
+
+        return values.isEmpty() ? null : values;
+    }
+
+    /*
+     * Parses a NULL or numeric literal.
+     */
+
+    private static Object parseBareLiteral(String token) {
+        if (token.equalsIgnoreCase("NULL")) {
+            return null;
+        }
+
+        try {
+            if (token.matches("[+-]?\\d+")) {
+                return Long.parseLong(token);
+            } else if (token.matches("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?")) {
+                return Double.parseDouble(token);
+            }
+        } catch (NumberFormatException e) {
+            // not representable; fall through
+        }
+
+        return NOT_A_LITERAL;
+    }
+}
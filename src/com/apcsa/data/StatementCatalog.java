@@ -0,0 +1,218 @@
+package com.apcsa.data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StatementCatalog {
+
+    private static final Map<String, String> QUERIES = loadQueries();
+
+    /**
+     * @return every query constant declared in QueryUtils, keyed by SQL and mapped to the constant name
+     */
+
+    public static Map<String, String> queries() {
+        return QUERIES;
+    }
+
+    /**
+     * Determines whether or not a SQL string is one of the cataloged queries.
+     *
+     * @param sql the SQL string
+     * @return true if the SQL is declared in QueryUtils; false otherwise
+     */
+
+    public static boolean contains(String sql) {
+        return QUERIES.containsKey(sql);
+    }
+
+    /**
+     * Compiles every cataloged query against the current schema.
+     *
+     * @param conn the database connection to compile against
+     * @throws IllegalStateException if one or more queries fail to compile
+     */
+
+    public static void validate(Connection conn) {
+        ArrayList<String> failures = new ArrayList<String>();
+
+        for (Map.Entry<String, String> query : QUERIES.entrySet()) {
+            try {
+                conn.unwrap(Connection.class).prepareStatement(query.getKey()).close();     // compiling the statement is the check
+            } catch (SQLException e) {
+                failures.add(query.getValue() + ": " + e.getMessage());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Queries do not match the database schema " + failures);
+        }
+    }
+
+    /*
+     * Reads the SQL constants from QueryUtils.
+     *
+     * @return a map of SQL to constant name
+     */
+
+    private static Map<String, String> loadQueries() {
+        Map<String, String> queries = new LinkedHashMap<String, String>();
+
+        for (Field field : QueryUtils.class.getFields()) {
+            int modifiers = field.getModifiers();
+
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType() == String.class) {
+                try {
+                    queries.putIfAbsent((String) field.get(null), field.getName());
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(queries);
+    }
+
+    /*
+     * A per-connection cache of compiled cataloged queries. Closing a cached
+     * statement resets it for the next caller instead of finalizing it. A connection
+     * is only ever used by one borrower at a time, so the cache is not synchronized.
+     */
+
+    static class Cache {
+
+        private final Connection conn;
+        private final Map<String, CachedStatement> statements;
+
+        Cache(Connection conn) {
+            this.conn = conn;
+            this.statements = new HashMap<String, CachedStatement>();
+        }
+
+        /*
+         * Compiles every cataloged query that the current schema supports. Queries
+         * that fail (e.g., before the database has been built) are compiled on first use.
+         */
+
+        void warmUp() {
+            for (String sql : QUERIES.keySet()) {
+                if (!statements.containsKey(sql)) {
+                    try {
+                        statements.put(sql, new CachedStatement(conn.prepareStatement(sql)));
+                    } catch (SQLException e) {
+                        // compiled lazily once the schema exists
+                    }
+                }
+            }
+        }
+
+        /*
+         * Returns a compiled statement for the SQL, reusing the cached statement when
+         * it is cataloged and not already in use on this connection.
+         */
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            if (!QUERIES.containsKey(sql)) {
+                return conn.prepareStatement(sql);
+            }
+
+            CachedStatement cached = statements.get(sql);
+            if (cached == null) {
+                cached = new CachedStatement(conn.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else if (cached.inUse) {
+                return conn.prepareStatement(sql);     // nested use of the same query
+            }
+
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        /*
+         * Finalizes every cached statement.
+         */
+
+        void close() {
+            for (CachedStatement cached : statements.values()) {
+                try {
+                    cached.raw.close();
+                } catch (SQLException e) {
+                    // connection is going away
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    /*
+     * A compiled statement along with the proxy handed to callers.
+     */
+
+    private static class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement raw;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private ResultSet results;
+
+        CachedStatement(PreparedStatement raw) {
+            this.raw = raw;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                StatementCatalog.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (inUse) {
+                    inUse = false;
+
+                    if (results != null) {
+                        results.close();    // don't leave a cursor open for the next borrower
+                        results = null;
+                    }
+                    raw.clearParameters();
+                    raw.clearBatch();
+                }
+                return null;
+            case "isClosed":
+                return !inUse || raw.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                break;
+            }
+
+            if (!inUse) {
+                throw new SQLException("Statement has already been closed.");
+            }
+
+            try {
+                Object result = method.invoke(raw, args);
+
+                if (result instanceof ResultSet) {
+                    results = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.apcsa.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class WriteDispatcher {
+
+    private final ConnectionPool pool;
+    private final int maxBatch;
+    private final BlockingQueue<Task<?>> queue;
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates an instance of the WriteDispatcher class and starts its writer thread.
+     *
+     * @param url the JDBC url of the database
+     * @param profile the pragmas applied to the writer's connection
+     * @param maxBatch the most writes committed together
+     * @param queueSize the most writes waiting at once (further callers block)
+     */
+
+    public WriteDispatcher(String url, PragmaProfile profile, int maxBatch, int queueSize) {
+        this.pool = new ConnectionPool(url, profile, 1, Long.MAX_VALUE, Long.MAX_VALUE, 5000L);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new ArrayBlockingQueue<Task<?>>(Math.max(1, queueSize));
+        this.writer = new Thread(this::run, "database-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates a dispatcher configured from system properties: powerschool.writer.maxBatch
+     * (default 64) and powerschool.writer.queueSize (default 1024).
+     *
+     * @param url the JDBC url of the database
+     * @return a write dispatcher
+     */
+
+    public static WriteDispatcher fromSystemProperties(String url) {
+        return new WriteDispatcher(url, PragmaProfile.fromSystemProperties(),
+            Integer.getInteger("powerschool.writer.maxBatch", 64),
+            Integer.getInteger("powerschool.writer.queueSize", 1024));
+    }
+
+    /**
+     * Queues a write. Writes run one at a time on the writer's connection, and the
+     * writes waiting together are committed in one transaction, so callers never
+     * contend for SQLite's write lock. Each write runs inside its own savepoint: if it
+     * calls rollback() or throws, only its changes are undone. Its calls to commit(),
+     * setAutoCommit(), and close() are ignored, and its future completes only once
+     * the batch has been committed.
+     *
+     * @param write the write
+     * @return the write's result
+     */
+
+    public <T> CompletableFuture<T> submit(Write<T> write) {
+        Task<T> task = new Task<T>(write);
+
+        if (closed) {
+            task.future.completeExceptionally(new SQLException("Write dispatcher has been shut down."));
+        } else if (Thread.currentThread() == writer) {
+            task.future.completeExceptionally(new IllegalStateException("A write cannot wait on another write."));
+        } else {
+            try {
+                queue.put(task);
+
+                if (closed && !writer.isAlive() && queue.remove(task)) {
+                    task.future.completeExceptionally(new SQLException("Write dispatcher has been shut down."));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.future.completeExceptionally(e);
+            }
+        }
+
+        return task.future;
+    }
+
+    /**
+     * Queues a write and waits for it to be committed (see submit).
+     *
+     * @param write the write
+     * @return the write's result
+     * @throws SQLException if the write or its batch failed
+     */
+
+    public <T> T call(Write<T> write) throws SQLException {
+        try {
+            return submit(write).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * @return the number of writes waiting to run
+     */
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting writes, waits for the queued writes to be committed, then closes
+     * the writer's connection. A write queued as the writer was exiting is failed.
+     */
+
+    public void shutdown() {
+        closed = true;
+        writer.interrupt();
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // submit() re-checks after queueing, but only once the writer is gone; a write
+        // queued between the writer's last poll and its exit is caught here
+
+        if (!writer.isAlive()) {
+            Task<?> task;
+            while ((task = queue.poll()) != null) {
+                task.future.completeExceptionally(new SQLException("Write dispatcher has been shut down."));
+            }
+        }
+        pool.shutdown();
+    }
+
+    /*
+     * The writer thread: takes the next write, drains whatever else is waiting, and
+     * runs them as one batch.
+     */
+
+    private void run() {
+        ArrayList<Task<?>> batch = new ArrayList<Task<?>>(maxBatch);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Task<?> first = closed ? queue.poll() : queue.take();
+
+                if (first == null) {
+                    break;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+            } catch (InterruptedException e) {
+                continue;       // shutting down; finish the queue
+            }
+
+            execute(batch);
+            batch.clear();
+        }
+    }
+
+    /*
+     * Runs a batch in one transaction and completes each future after the commit. If
+     * the commit fails, every write in the batch fails.
+     */
+
+    private void execute(ArrayList<Task<?>> batch) {
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+
+            for (Task<?> task : batch) {
+                task.run(conn);
+            }
+
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Task<?> task : batch) {
+                task.failure = task.failure != null ? task.failure : e;
+            }
+        }
+
+        for (Task<?> task : batch) {
+            task.complete();
+        }
+    }
+
+    /**
+     * A unit of work run on the writer's connection.
+     *
+     * @param <T> the result type
+     */
+
+    @FunctionalInterface
+    public interface Write<T> {
+
+        /**
+         * Performs the write.
+         *
+         * @param conn the writer's connection (see submit for how transactions behave)
+         * @return the result handed to the caller's future
+         * @throws SQLException
+         */
+
+        T apply(Connection conn) throws SQLException;
+    }
+
+    /*
+     * A queued write, its outcome, and the view of the writer's connection it runs on.
+     */
+
+    private static class Task<T> implements InvocationHandler {
+
+        private final Write<T> write;
+        private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        private Connection conn;
+        private Savepoint savepoint;
+        private T result;
+        private Throwable failure;
+
+        Task(Write<T> write) {
+            this.write = write;
+        }
+
+        void run(Connection conn) throws SQLException {
+            this.conn = conn;
+            this.savepoint = conn.setSavepoint();
+
+            Connection view = (Connection) Proxy.newProxyInstance(
+                WriteDispatcher.class.getClassLoader(), new Class<?>[] { Connection.class }, this);
+
+            try {
+                result = write.apply(view);
+            } catch (SQLException | RuntimeException e) {
+                failure = e;
+                conn.rollback(savepoint);
+            } finally {
+                conn.releaseSavepoint(savepoint);
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "commit":
+            case "setAutoCommit":
+            case "close":
+                return null;
+            case "getAutoCommit":
+                return false;
+            case "rollback":
+                if (args == null) {
+                    conn.rollback(savepoint);
+                    return null;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                break;
+            }
+
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
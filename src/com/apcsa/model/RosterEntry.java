@@ -0,0 +1,49 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import com.apcsa.data.RowMapper;
+
+/**
+ * A student enrolled in a course, along with the student's grade in that course.
+ */
+
+public record RosterEntry(int studentId, String firstName, String lastName, double gpa, Double courseGrade) {
+
+    /**
+     * Resolves the roster columns of a ResultSet.
+     *
+     * @param rs the ResultSet
+     * @return a mapper for each row of the ResultSet
+     * @throws SQLException
+     */
+
+    public static RowMapper<RosterEntry> mapper(ResultSet rs) throws SQLException {
+        int studentId = rs.findColumn("student_id");
+        int firstName = rs.findColumn("first_name");
+        int lastName = rs.findColumn("last_name");
+        int gpa = rs.findColumn("gpa");
+        int courseGrade = rs.findColumn("grade");
+
+        return row -> {
+            double grade = row.getDouble(courseGrade);
+            boolean graded = !row.wasNull();
+
+            return new RosterEntry(
+                row.getInt(studentId),
+                row.getString(firstName),
+                row.getString(lastName),
+                row.getDouble(gpa),
+                graded ? grade : null
+            );
+        };
+    }
+
+    /**
+     * @return true if the student has a GPA (i.e., has been graded in any course)
+     */
+
+    public boolean hasGpa() {
+        return gpa != -1.0;
+    }
+}
@@ -34,6 +34,10 @@ public class Student extends User {
     	return classRank;
     }
     
+    public void setClassRank(int classRank) {
+    	this.classRank = classRank;
+    }
+    
     public int getGradeLevel() {
     	return gradeLevel;
     }
@@ -0,0 +1,49 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import com.apcsa.data.RowMapper;
+
+/**
+ * A student row without the associated user account.
+ */
+
+public record StudentSummary(int studentId, String firstName, String lastName, int graduation,
+        int gradeLevel, double gpa, int classRank) {
+
+    /**
+     * Resolves the student columns of a ResultSet.
+     *
+     * @param rs the ResultSet
+     * @return a mapper for each row of the ResultSet
+     * @throws SQLException
+     */
+
+    public static RowMapper<StudentSummary> mapper(ResultSet rs) throws SQLException {
+        int studentId = rs.findColumn("student_id");
+        int firstName = rs.findColumn("first_name");
+        int lastName = rs.findColumn("last_name");
+        int graduation = rs.findColumn("graduation");
+        int gradeLevel = rs.findColumn("grade_level");
+        int gpa = rs.findColumn("gpa");
+        int classRank = rs.findColumn("class_rank");
+
+        return row -> new StudentSummary(
+            row.getInt(studentId),
+            row.getString(firstName),
+            row.getString(lastName),
+            row.getInt(graduation),
+            row.getInt(gradeLevel),
+            row.getDouble(gpa),
+            row.getInt(classRank)
+        );
+    }
+
+    /**
+     * @return true if the student has a GPA (i.e., has been graded in any course)
+     */
+
+    public boolean hasGpa() {
+        return gpa != -1.0;
+    }
+}
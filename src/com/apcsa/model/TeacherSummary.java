@@ -0,0 +1,37 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import com.apcsa.data.RowMapper;
+
+/**
+ * A teacher row, along with the title of the teacher's department.
+ */
+
+public record TeacherSummary(int teacherId, String firstName, String lastName, int departmentId,
+        String departmentTitle) {
+
+    /**
+     * Resolves the teacher columns of a ResultSet.
+     *
+     * @param rs the ResultSet
+     * @return a mapper for each row of the ResultSet
+     * @throws SQLException
+     */
+
+    public static RowMapper<TeacherSummary> mapper(ResultSet rs) throws SQLException {
+        int teacherId = rs.findColumn("teacher_id");
+        int firstName = rs.findColumn("first_name");
+        int lastName = rs.findColumn("last_name");
+        int departmentId = rs.findColumn("department_id");
+        int departmentTitle = rs.findColumn("department_title");
+
+        return row -> new TeacherSummary(
+            row.getInt(teacherId),
+            row.getString(firstName),
+            row.getString(lastName),
+            row.getInt(departmentId),
+            row.getString(departmentTitle)
+        );
+    }
+}
@@ -0,0 +1,77 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import com.apcsa.data.RowMapper;
+
+/**
+ * A course on a student's transcript: the marking period, exam, and course grades
+ * (null where nothing has been graded yet), and the course's teacher.
+ */
+
+public record TranscriptEntry(
+    int courseId,
+    String courseNo,
+    String title,
+    double creditHours,
+    Double mp1,
+    Double mp2,
+    Double midtermExam,
+    Double mp3,
+    Double mp4,
+    Double finalExam,
+    Double grade,
+    String teacherFirstName,
+    String teacherLastName
+) {
+
+    /**
+     * Resolves the course, course grade, and teacher columns of a ResultSet.
+     *
+     * @param rs the ResultSet
+     * @return a mapper for each row of the ResultSet
+     * @throws SQLException
+     */
+
+    public static RowMapper<TranscriptEntry> mapper(ResultSet rs) throws SQLException {
+        int courseId = rs.findColumn("course_id");
+        int courseNo = rs.findColumn("course_no");
+        int title = rs.findColumn("title");
+        int creditHours = rs.findColumn("credit_hours");
+        int mp1 = rs.findColumn("mp1");
+        int mp2 = rs.findColumn("mp2");
+        int midtermExam = rs.findColumn("midterm_exam");
+        int mp3 = rs.findColumn("mp3");
+        int mp4 = rs.findColumn("mp4");
+        int finalExam = rs.findColumn("final_exam");
+        int grade = rs.findColumn("grade");
+        int teacherFirstName = rs.findColumn("teacher_first_name");
+        int teacherLastName = rs.findColumn("teacher_last_name");
+
+        return row -> new TranscriptEntry(
+            row.getInt(courseId),
+            row.getString(courseNo),
+            row.getString(title),
+            row.getDouble(creditHours),
+            getGrade(row, mp1),
+            getGrade(row, mp2),
+            getGrade(row, midtermExam),
+            getGrade(row, mp3),
+            getGrade(row, mp4),
+            getGrade(row, finalExam),
+            getGrade(row, grade),
+            row.getString(teacherFirstName),
+            row.getString(teacherLastName)
+        );
+    }
+
+    /*
+     * Reads a nullable grade column.
+     */
+
+    private static Double getGrade(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+
+        return rs.wasNull() ? null : value;
+    }
+}
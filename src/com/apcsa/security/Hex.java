@@ -0,0 +1,58 @@
+package com.apcsa.security;
+
+public class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Writes the lowercase hex encoding of a byte array into a character array.
+     *
+     * @param bytes the bytes
+     * @param out the destination (at least twice as long as bytes)
+     */
+
+    public static void encode(byte[] bytes, char[] out) {
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            out[j++] = DIGITS[(bytes[i] >> 4) & 0x0f];
+            out[j++] = DIGITS[bytes[i] & 0x0f];
+        }
+    }
+
+    /**
+     * Encodes a byte array as a lowercase hex string.
+     *
+     * @param bytes the bytes
+     * @return the hex string
+     */
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        encode(bytes, out);
+
+        return new String(out);
+    }
+
+    /**
+     * Compares bytes against a hex string without decoding it. Every character is
+     * examined, so the time taken does not reveal where the first difference is.
+     *
+     * @param bytes the bytes
+     * @param hex the hex string (either case)
+     * @return true if hex encodes exactly bytes; false otherwise
+     */
+
+    public static boolean matches(byte[] bytes, String hex) {
+        if (hex == null || hex.length() != bytes.length * 2) {
+            return false;
+        }
+
+        int difference = 0;
+
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            difference |= DIGITS[(bytes[i] >> 4) & 0x0f] ^ Character.toLowerCase(hex.charAt(j++));
+            difference |= DIGITS[bytes[i] & 0x0f] ^ Character.toLowerCase(hex.charAt(j++));
+        }
+
+        return difference == 0;
+    }
+}
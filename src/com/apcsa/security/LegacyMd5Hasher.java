@@ -0,0 +1,66 @@
+package com.apcsa.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The original unsalted MD5 scheme. Utils.getHash fed the password to the digest
+ * twice (update, then digest), so stored hashes are MD5(password + password); that
+ * is preserved here so existing accounts keep working until they are rehashed.
+ */
+
+public class LegacyMd5Hasher implements PasswordHasher {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Override
+    public String hash(String plaintext) {
+        return Hex.encode(digest(plaintext));
+    }
+
+    @Override
+    public boolean recognizes(String stored) {
+        if (stored == null || stored.length() != 32) {
+            return false;
+        }
+
+        for (int i = 0; i < stored.length(); i++) {
+            if (Character.digit(stored.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean verify(String plaintext, String stored) {
+        return Hex.matches(digest(plaintext), stored);
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        return false;
+    }
+
+    /*
+     * Computes MD5(password + password) with this thread's digest.
+     */
+
+    private static byte[] digest(String plaintext) {
+        MessageDigest md = DIGEST.get();
+        byte[] bytes = plaintext.getBytes(StandardCharsets.UTF_8);
+
+        md.update(bytes);
+        md.update(bytes);
+
+        return md.digest();     // also resets the digest for the next call
+    }
+}
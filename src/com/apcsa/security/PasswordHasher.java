@@ -0,0 +1,47 @@
+package com.apcsa.security;
+
+/**
+ * A password hashing algorithm. Implementations must be thread-safe.
+ */
+
+public interface PasswordHasher {
+
+    /**
+     * Hashes a password for storage in users.auth.
+     *
+     * @param plaintext the password
+     * @return the encoded hash, including whatever salt and parameters verify needs
+     */
+
+    String hash(String plaintext);
+
+    /**
+     * Determines whether or not a stored hash was produced by this algorithm.
+     *
+     * @param stored the value of users.auth
+     * @return true if this hasher can verify the stored hash; false otherwise
+     */
+
+    boolean recognizes(String stored);
+
+    /**
+     * Checks a password against a stored hash (in constant time with respect to the
+     * stored hash).
+     *
+     * @param plaintext the password
+     * @param stored the value of users.auth
+     * @return true if the password matches; false otherwise
+     */
+
+    boolean verify(String plaintext, String stored);
+
+    /**
+     * Determines whether or not a hash this algorithm recognizes was produced with
+     * weaker parameters than the current ones.
+     *
+     * @param stored the value of users.auth
+     * @return true if the password should be hashed again; false otherwise
+     */
+
+    boolean needsRehash(String stored);
+}
@@ -0,0 +1,84 @@
+package com.apcsa.security;
+
+/**
+ * The password hashing policy. New hashes use the algorithm named by the
+ * powerschool.passwordHash system property ("pbkdf2", the default, or "md5");
+ * PBKDF2's work factor comes from powerschool.pbkdf2Iterations. Stored hashes in
+ * any supported format still verify, and needsRehash reports the ones that should
+ * be upgraded to the current policy.
+ */
+
+public class Passwords {
+
+    public static final int DEFAULT_ITERATIONS = 100_000;
+
+    private static final LegacyMd5Hasher LEGACY = new LegacyMd5Hasher();
+    private static final Pbkdf2Hasher PBKDF2 =
+        new Pbkdf2Hasher(Integer.getInteger("powerschool.pbkdf2Iterations", DEFAULT_ITERATIONS));
+    private static final PasswordHasher CURRENT =
+        "md5".equalsIgnoreCase(System.getProperty("powerschool.passwordHash", "pbkdf2")) ? LEGACY : PBKDF2;
+
+    /**
+     * Hashes a password with the current algorithm.
+     *
+     * @param plaintext the password
+     * @return the encoded hash
+     */
+
+    public static String hash(String plaintext) {
+        return CURRENT.hash(plaintext);
+    }
+
+    /**
+     * Checks a password against a stored hash in any supported format.
+     *
+     * @param plaintext the password
+     * @param stored the value of users.auth
+     * @return true if the password matches; false otherwise
+     */
+
+    public static boolean verify(String plaintext, String stored) {
+        PasswordHasher hasher = find(stored);
+
+        return hasher != null && hasher.verify(plaintext, stored);
+    }
+
+    /**
+     * Determines whether or not a stored hash should be replaced with one made by the
+     * current algorithm and work factor.
+     *
+     * @param stored the value of users.auth
+     * @return true if the password should be hashed again; false otherwise
+     */
+
+    public static boolean needsRehash(String stored) {
+        PasswordHasher hasher = find(stored);
+
+        return hasher != CURRENT || hasher.needsRehash(stored);
+    }
+
+    /**
+     * Spends about as long as verifying a password, so that logins for unknown
+     * usernames take as long as logins with a wrong password.
+     *
+     * @param plaintext the password
+     */
+
+    public static void simulateVerify(String plaintext) {
+        CURRENT.hash(plaintext);
+    }
+
+    /*
+     * Finds the hasher that produced a stored hash.
+     */
+
+    private static PasswordHasher find(String stored) {
+        if (PBKDF2.recognizes(stored)) {
+            return PBKDF2;
+        } else if (LEGACY.recognizes(stored)) {
+            return LEGACY;
+        }
+
+        return null;
+    }
+}
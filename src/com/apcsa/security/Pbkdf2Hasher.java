@@ -0,0 +1,115 @@
+package com.apcsa.security;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 with HMAC-SHA256. Hashes are stored as
+ * pbkdf2-sha256$iterations$salt$hash, with the salt and hash in Base64.
+ */
+
+public class Pbkdf2Hasher implements PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int iterations;
+
+    /**
+     * Creates an instance of the Pbkdf2Hasher class.
+     *
+     * @param iterations the work factor for new hashes
+     */
+
+    public Pbkdf2Hasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1.");
+        }
+
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return the work factor for new hashes
+     */
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String plaintext) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+            + base64.encodeToString(derive(plaintext, salt, iterations));
+    }
+
+    @Override
+    public boolean recognizes(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean verify(String plaintext, String stored) {
+        String[] parts = stored.split("\\$");
+
+        if (parts.length != 4) {
+            return false;
+        }
+
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+
+            return MessageDigest.isEqual(derive(plaintext, salt, storedIterations), expected);
+        } catch (IllegalArgumentException e) {
+            return false;   // malformed hash
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        String[] parts = stored.split("\\$");
+
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /*
+     * Runs PBKDF2 with this thread's key factory.
+     */
+
+    private static byte[] derive(String plaintext, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(plaintext.toCharArray(), salt, iterations, HASH_BITS);
+
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
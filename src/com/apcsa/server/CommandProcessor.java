@@ -0,0 +1,538 @@
+package com.apcsa.server;
+
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import com.apcsa.data.AsyncPowerSchool;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.model.RosterEntry;
+import com.apcsa.model.Student;
+import com.apcsa.model.StudentSummary;
+import com.apcsa.model.Teacher;
+import com.apcsa.model.TeacherSummary;
+import com.apcsa.model.TranscriptEntry;
+import com.apcsa.model.User;
+import com.apcsa.security.Passwords;
+import com.apcsa.session.Session;
+import com.apcsa.session.SessionManager;
+
+/**
+ * Runs the text protocol for one connection. Each request is a single line: a command
+ * followed by arguments separated by spaces (arguments containing spaces are
+ * double-quoted). Each response is zero or more tab-separated data lines followed by
+ * a status line, either "OK" (optionally followed by a message) or "ERR message".
+ * Send HELP for the commands available to the logged-in account.
+ *
+ * Logins are sessions held by a SessionManager, so a session outlives its connection
+ * until it is logged out or goes idle; a client that reconnects can RESUME it by token.
+ */
+
+public class CommandProcessor {
+
+    private static final String FIRST_LOGIN = "0000-00-00 00:00:00.000";
+
+    private final SessionManager sessions;
+    private Session session;
+    private User user;
+
+    /**
+     * Creates an instance of the CommandProcessor class.
+     *
+     * @param sessions the session registry shared by every connection
+     */
+
+    public CommandProcessor(SessionManager sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Runs one request.
+     *
+     * @param line the request line
+     * @param out where the response is written (not flushed)
+     * @return false if the client asked to disconnect; true otherwise
+     */
+
+    public boolean execute(String line, PrintWriter out) {
+        ArrayList<String> args = tokenize(line);
+
+        if (args.isEmpty()) {
+            return true;
+        }
+
+        String command = args.remove(0).toUpperCase();
+
+        if (session != null && sessions.get(session.getToken()) == null) {
+            session = null;
+            user = null;
+
+            if (!command.equals("QUIT")) {
+                out.println("ERR Session expired. Log in again.");
+                return true;
+            }
+        }
+
+        try {
+            switch (command) {
+                case "QUIT":
+                    out.println("OK Goodbye.");
+                    return false;
+                case "HELP": help(out); break;
+                case "LOGIN": login(args, out); break;
+                case "RESUME": resume(args, out); break;
+                case "LOGOUT": logout(out); break;
+                case "PASSWORD": password(args, out); break;
+                case "RESETPW": resetPassword(args, out); break;
+                case "FACTORYRESET": factoryReset(out); break;
+                case "SNAPSHOT": snapshot(args, out); break;
+                case "FACULTY": faculty(args, out); break;
+                case "STUDENTS": students(args, out); break;
+                case "ROSTER": roster(args, out); break;
+                case "COURSES": courses(out); break;
+                case "ASSIGNMENTS": assignments(args, out); break;
+                case "ADDASSIGNMENT": addAssignment(args, out); break;
+                case "DELETEASSIGNMENT": deleteAssignment(args, out); break;
+                case "GRADE": grade(args, out); break;
+                case "GRADES": grades(out); break;
+                case "ASSIGNMENTGRADES": assignmentGrades(args, out); break;
+                default: out.println("ERR Unknown command " + command + ". Send HELP for a list."); break;
+            }
+        } catch (ProtocolException e) {
+            out.println("ERR " + e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            out.println("ERR Internal error.");
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the logged-in user, or null if no one is logged in
+     */
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return the current session, or null if no one is logged in
+     */
+
+    public Session getSession() {
+        return session;
+    }
+
+    ////////////////////////////// ALL ACCOUNTS ////////////////////////////////////////
+
+    private void help(PrintWriter out) {
+        out.println("LOGIN username password\tRESUME token\tLOGOUT\tPASSWORD current new\tQUIT");
+
+        if (user == null) {
+            // nothing else is available
+        } else if (user.isRoot()) {
+            out.println("RESETPW username\tFACTORYRESET\tSNAPSHOT file");
+        } else if (user.isAdministrator()) {
+            out.println("FACULTY [department_id]\tSTUDENTS [grade_level]\tROSTER course_no");
+        } else if (user.isTeacher()) {
+            out.println("COURSES\tROSTER course_no\tASSIGNMENTS course_no marking_period");
+            out.println("ADDASSIGNMENT course_no marking_period title points\tDELETEASSIGNMENT course_no marking_period title");
+            out.println("GRADE course_no marking_period title student_id points");
+        } else if (user.isStudent()) {
+            out.println("GRADES\tASSIGNMENTGRADES course_no marking_period");
+        }
+        out.println("OK");
+    }
+
+    private void login(ArrayList<String> args, PrintWriter out) {
+        expect(args, 2, "LOGIN username password");
+
+        if (user != null) {
+            throw new ProtocolException("Already logged in as " + user.getUsername() + ".");
+        }
+
+        Session login = sessions.login(args.get(0), args.get(1));
+
+        if (login == null) {
+            throw new ProtocolException("Invalid username and/or password.");
+        }
+
+        session = login;
+        user = login.getUser();
+
+        boolean firstLogin = !user.isRoot() && FIRST_LOGIN.equals(user.getLastLogin());
+
+        out.println("OK " + user.getAccountType() + " " + session.getToken() + (firstLogin ? " FIRST_LOGIN" : ""));
+    }
+
+    private void resume(ArrayList<String> args, PrintWriter out) {
+        expect(args, 1, "RESUME token");
+
+        if (user != null) {
+            throw new ProtocolException("Already logged in as " + user.getUsername() + ".");
+        }
+
+        Session resumed = sessions.get(args.get(0));
+
+        if (resumed == null) {
+            throw new ProtocolException("Unknown or expired session.");
+        }
+
+        session = resumed;
+        user = resumed.getUser();
+
+        out.println("OK " + user.getAccountType());
+    }
+
+    private void logout(PrintWriter out) {
+        requireLogin();
+
+        sessions.logout(session.getToken());
+        session = null;
+        user = null;
+        out.println("OK");
+    }
+
+    private void password(ArrayList<String> args, PrintWriter out) {
+        expect(args, 2, "PASSWORD current new");
+        requireLogin();
+
+        if (!Passwords.verify(args.get(0), PowerSchool.getPassword(user, args.get(0)))) {
+            throw new ProtocolException("Invalid current password.");
+        }
+        status(PowerSchool.updatePassword(user.getUsername(), args.get(1)), "Unable to change password.", out);
+    }
+
+    ////////////////////////////// ROOT ////////////////////////////////////////////////
+
+    private void resetPassword(ArrayList<String> args, PrintWriter out) {
+        expect(args, 1, "RESETPW username");
+        require(user != null && user.isRoot());
+
+        status(PowerSchool.updatePasswordAndTime(args.get(0)), "User " + args.get(0) + " does not exist.", out);
+    }
+
+    private void factoryReset(PrintWriter out) {
+        require(user != null && user.isRoot());
+
+        PowerSchool.initialize(true);
+        out.println("OK");
+    }
+
+    private void snapshot(ArrayList<String> args, PrintWriter out) {
+        expect(args, 1, "SNAPSHOT file");
+        require(user != null && user.isRoot());
+
+        status(PowerSchool.snapshot(Paths.get(args.get(0))), "Unable to write snapshot.", out);
+    }
+
+    ////////////////////////////// ADMINISTRATOR ///////////////////////////////////////
+
+    private void faculty(ArrayList<String> args, PrintWriter out) {
+        require(user != null && user.isAdministrator());
+
+        ArrayList<TeacherSummary> teachers = args.isEmpty()
+            ? PowerSchool.getTeachers()
+            : PowerSchool.getTeachersWithDepartmentId(parseInt(args.get(0), "department_id"));
+
+        for (TeacherSummary teacher : teachers) {
+            out.println(teacher.teacherId() + "\t" + teacher.lastName() + "\t" + teacher.firstName() + "\t" + teacher.departmentTitle());
+        }
+        out.println("OK");
+    }
+
+    private void students(ArrayList<String> args, PrintWriter out) {
+        require(user != null && user.isAdministrator());
+
+        ArrayList<StudentSummary> students = args.isEmpty()
+            ? PowerSchool.getStudents()
+            : PowerSchool.getStudentsByGrade(parseInt(args.get(0), "grade_level"));
+
+        for (StudentSummary student : students) {
+            out.println(student.studentId() + "\t" + student.lastName() + "\t" + student.firstName() + "\t"
+                + student.gradeLevel() + "\t" + (student.hasGpa() ? student.gpa() : "--") + "\t" + student.classRank());
+        }
+        out.println("OK");
+    }
+
+    private void roster(ArrayList<String> args, PrintWriter out) {
+        expect(args, 1, "ROSTER course_no");
+        require(user != null && (user.isAdministrator() || user.isTeacher()));
+
+        for (RosterEntry student : PowerSchool.getRoster(courseId(args.get(0)))) {
+            out.println(student.studentId() + "\t" + student.lastName() + "\t" + student.firstName() + "\t"
+                + (student.courseGrade() == null ? "--" : student.courseGrade()));
+        }
+        out.println("OK");
+    }
+
+    ////////////////////////////// TEACHER /////////////////////////////////////////////
+
+    private void courses(PrintWriter out) {
+        require(user != null && user.isTeacher());
+
+        for (String courseNo : PowerSchool.getCourses(((Teacher) user).getDepartmentId())) {
+            out.println(courseNo);
+        }
+        out.println("OK");
+    }
+
+    private void assignments(ArrayList<String> args, PrintWriter out) {
+        expect(args, 2, "ASSIGNMENTS course_no marking_period");
+        require(user != null && user.isTeacher());
+
+        int courseId = courseId(args.get(0));
+        int markingPeriod = markingPeriod(args.get(1));
+
+        for (String title : PowerSchool.getAssignments(courseId, markingPeriod)) {
+            out.println(title + "\t" + PowerSchool.getPointValue(courseId, markingPeriod, title));
+        }
+        out.println("OK");
+    }
+
+    private void addAssignment(ArrayList<String> args, PrintWriter out) {
+        expect(args, 4, "ADDASSIGNMENT course_no marking_period title points");
+        require(user != null && user.isTeacher());
+
+        int courseId = courseId(args.get(0));
+        int markingPeriod = markingPeriod(args.get(1));
+        String title = args.get(2);
+        int pointValue = parseInt(args.get(3), "points");
+
+        if (pointValue < 1 || pointValue > 100) {
+            throw new ProtocolException("Points must be between 1 and 100.");
+        } else if (PowerSchool.getAssignments(courseId, markingPeriod).contains(title)) {
+            throw new ProtocolException("Assignment " + title + " already exists.");
+        }
+
+        int assignmentId = PowerSchool.nextAssignmentId();
+        int isMidterm = markingPeriod == 5 ? 1 : 0;
+        int isFinal = markingPeriod == 6 ? 1 : 0;
+
+        status(assignmentId == -1 ? -1 : PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue),
+            "Unable to add assignment.", out);
+    }
+
+    private void deleteAssignment(ArrayList<String> args, PrintWriter out) {
+        expect(args, 3, "DELETEASSIGNMENT course_no marking_period title");
+        require(user != null && user.isTeacher());
+
+        int courseId = courseId(args.get(0));
+        int markingPeriod = markingPeriod(args.get(1));
+
+        if (!PowerSchool.getAssignments(courseId, markingPeriod).contains(args.get(2))) {
+            throw new ProtocolException("Unknown assignment " + args.get(2) + ".");
+        }
+        status(PowerSchool.deleteAssignment(courseId, markingPeriod, args.get(2)), "Unable to delete assignment.", out);
+    }
+
+    private void grade(ArrayList<String> args, PrintWriter out) {
+        expect(args, 5, "GRADE course_no marking_period title student_id points");
+        require(user != null && user.isTeacher());
+
+        int courseId = courseId(args.get(0));
+        int markingPeriod = markingPeriod(args.get(1));
+        String title = args.get(2);
+        int studentId = parseInt(args.get(3), "student_id");
+        double pointsEarned = parseDouble(args.get(4), "points");
+
+        if (!PowerSchool.getAssignments(courseId, markingPeriod).contains(title)) {
+            throw new ProtocolException("Unknown assignment " + title + ".");
+        }
+
+        boolean enrolled = false;
+        for (RosterEntry student : PowerSchool.getRoster(courseId)) {
+            enrolled |= student.studentId() == studentId;
+        }
+        if (!enrolled) {
+            throw new ProtocolException("Student " + studentId + " is not enrolled in " + args.get(0) + ".");
+        }
+
+        int pointValue = PowerSchool.getPointValue(courseId, markingPeriod, title);
+        if (pointsEarned < 0 || pointsEarned > pointValue) {
+            throw new ProtocolException("Points must be between 0 and " + pointValue + ".");
+        }
+
+        int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
+        HashMap<Integer, Double> grades = new HashMap<Integer, Double>();
+        grades.put(studentId, pointsEarned);
+
+        status(PowerSchool.addAssignmentGrades(courseId, assignmentId, pointValue, grades), "Unable to enter grade.", out);
+    }
+
+    ////////////////////////////// STUDENT /////////////////////////////////////////////
+
+    private void grades(PrintWriter out) {
+        require(user != null && user.isStudent());
+
+        for (TranscriptEntry entry : PowerSchool.getTranscript(((Student) user).getStudentId())) {
+            out.println(entry.courseNo() + "\t" + entry.title() + "\t" + (entry.grade() == null ? "--" : entry.grade()));
+        }
+        out.println("OK");
+    }
+
+    private void assignmentGrades(ArrayList<String> args, PrintWriter out) {
+        expect(args, 2, "ASSIGNMENTGRADES course_no marking_period");
+        require(user != null && user.isStudent());
+
+        int studentId = ((Student) user).getStudentId();
+        int courseId = -1;
+
+        for (TranscriptEntry entry : PowerSchool.getTranscript(studentId)) {
+            if (entry.courseNo().equalsIgnoreCase(args.get(0))) {
+                courseId = entry.courseId();
+            }
+        }
+        if (courseId == -1) {
+            throw new ProtocolException("You are not enrolled in " + args.get(0) + ".");
+        }
+
+        int markingPeriod = markingPeriod(args.get(1));
+        int course = courseId;
+        AsyncPowerSchool async = AsyncPowerSchool.shared();
+        ArrayList<CompletableFuture<String>> lines = new ArrayList<CompletableFuture<String>>();
+
+        for (String title : PowerSchool.getAssignmentTitle(courseId, markingPeriod)) {
+            CompletableFuture<Double> grade = async.getAssignmentIdFromTitlePlus(title, course, markingPeriod)
+                .thenCompose(assignmentId -> async.getAssignmentGrades(course, assignmentId))
+                .thenApply(grades -> grades.get(studentId));
+
+            lines.add(grade.thenCombine(async.getPointValue(title),
+                (points, pointValue) -> title + "\t" + (points == null ? "--" : points) + "\t" + pointValue));
+        }
+
+        for (CompletableFuture<String> line : lines) {
+            out.println(line.join());
+        }
+        out.println("OK");
+    }
+
+    ////////////////////////////// HELPERS /////////////////////////////////////////////
+
+    /*
+     * Splits a request into arguments. Double quotes group words; "" inside quotes is a
+     * literal quote.
+     */
+
+    static ArrayList<String> tokenize(String line) {
+        ArrayList<String> args = new ArrayList<String>();
+        StringBuilder arg = new StringBuilder();
+        boolean quoted = false;
+        boolean started = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    arg.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                started = true;
+            } else if (Character.isWhitespace(c)) {
+                if (started) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    started = false;
+                }
+            } else {
+                arg.append(c);
+                started = true;
+            }
+        }
+
+        if (started) {
+            args.add(arg.toString());
+        }
+
+        return args;
+    }
+
+    private static void expect(ArrayList<String> args, int count, String usage) {
+        if (args.size() != count) {
+            throw new ProtocolException("Usage: " + usage);
+        }
+    }
+
+    private void requireLogin() {
+        if (user == null) {
+            throw new ProtocolException("Not logged in.");
+        }
+    }
+
+    private void require(boolean allowed) {
+        requireLogin();
+
+        if (!allowed) {
+            throw new ProtocolException("Not available to " + user.getAccountType() + " accounts.");
+        }
+    }
+
+    /*
+     * Resolves a course number, limiting teachers to their own department.
+     */
+
+    private int courseId(String courseNo) {
+        String normalized = courseNo.toUpperCase();
+        ArrayList<String> courses = user.isTeacher()
+            ? PowerSchool.getCourses(((Teacher) user).getDepartmentId())
+            : PowerSchool.getAllCourses();
+
+        if (!courses.contains(normalized)) {
+            throw new ProtocolException("Course " + courseNo + " not found.");
+        }
+
+        return PowerSchool.getCourseIdFromCourseNo(normalized);
+    }
+
+    private static int markingPeriod(String value) {
+        int markingPeriod = parseInt(value, "marking_period");
+
+        if (markingPeriod < 1 || markingPeriod > 6) {
+            throw new ProtocolException("Marking period must be 1-4 (MP1-MP4), 5 (midterm), or 6 (final).");
+        }
+
+        return markingPeriod;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid " + name + " " + value + ".");
+        }
+    }
+
+    private static double parseDouble(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid " + name + " " + value + ".");
+        }
+    }
+
+    private static void status(int result, String error, PrintWriter out) {
+        out.println(result == -1 ? "ERR " + error : "OK");
+    }
+
+    /*
+     * A request that cannot be carried out; its message is sent to the client.
+     */
+
+    private static class ProtocolException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.apcsa.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.session.SessionManager;
+
+/*
+ * Serves the root, administrator, teacher, and student operations to many users at
+ * once over a line-based TCP protocol (see CommandProcessor). Each connection runs on
+ * its own virtual thread (or a platform thread on JDKs without them), and every
+ * connection shares the one PowerSchool data layer and its connection pool. The
+ * server binds to the loopback address unless -Dpowerschool.server.bind is set.
+ * Logins are sessions in one shared SessionManager, evicted after
+ * -Dpowerschool.session.idleTimeout milliseconds without a request.
+ *
+ *     java -cp bin:lib/sqlite-jdbc.jar com.apcsa.server.PowerSchoolServer [port]
+ *     nc localhost 8970
+ */
+
+public class PowerSchoolServer {
+
+    public static final int DEFAULT_PORT = 8970;
+
+    private final InetSocketAddress address;
+    private final int idleTimeout;
+    private final SessionManager sessions;
+    private final ExecutorService executor = VirtualThreads.newPerTaskExecutor("powerschool-client");
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    private volatile ServerSocket server;
+
+    /**
+     * Creates an instance of the PowerSchoolServer class.
+     *
+     * @param address the address to listen on
+     * @param idleTimeout how long (in milliseconds) a connection may sit idle before it is closed (0 for never)
+     * @param sessions the session registry
+     */
+
+    public PowerSchoolServer(InetSocketAddress address, int idleTimeout, SessionManager sessions) {
+        this.address = address;
+        this.idleTimeout = idleTimeout;
+        this.sessions = sessions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("powerschool.server.port", DEFAULT_PORT);
+        String bind = System.getProperty("powerschool.server.bind");
+        InetAddress host = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+
+        PowerSchool.initialize(false);
+
+        PowerSchoolServer server = new PowerSchoolServer(new InetSocketAddress(host, port),
+            Integer.getInteger("powerschool.server.idleTimeout", 30 * 60 * 1000), SessionManager.fromSystemProperties());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            PowerSchool.shutdown();
+        }));
+
+        System.out.println("PowerSchool server listening on " + host.getHostAddress() + ":" + port
+            + (VirtualThreads.isAvailable() ? " (virtual threads)" : " (platform threads)"));
+        server.serve();
+    }
+
+    /**
+     * Accepts connections until the server is stopped.
+     *
+     * @throws IOException if the server socket cannot be opened
+     */
+
+    public void serve() throws IOException {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(address, 1024);
+            server = socket;
+
+            while (!socket.isClosed()) {
+                Socket client;
+
+                try {
+                    client = socket.accept();
+                } catch (SocketException e) {
+                    break;      // closed by stop()
+                }
+
+                clients.add(client);
+                executor.execute(() -> handle(client));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections and disconnects every client.
+     */
+
+    public void stop() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            for (Socket client : clients) {
+                client.close();
+            }
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            sessions.shutdown();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port the server is listening on (-1 if it is not listening yet)
+     */
+
+    public int getPort() {
+        ServerSocket socket = server;
+
+        return socket == null ? -1 : socket.getLocalPort();
+    }
+
+    /*
+     * Runs the protocol for one connection.
+     */
+
+    private void handle(Socket client) {
+        CommandProcessor processor = new CommandProcessor(sessions);
+
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))) {
+
+            socket.setSoTimeout(idleTimeout);
+            socket.setTcpNoDelay(true);
+
+            out.println("OK PowerSchool ready. Send HELP for a list of commands.");
+            out.flush();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                boolean open = processor.execute(line, out);
+                out.flush();
+
+                if (!open) {
+                    break;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // idle connection; the session stays open until it expires
+        } catch (IOException e) {
+            // the client disconnected
+        } finally {
+            clients.remove(client);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.apcsa.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreads {
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task. Virtual
+     * threads are looked up reflectively so the code still builds and runs on a JDK
+     * without them (before 21), where an unbounded pool of daemon platform threads
+     * is used instead.
+     *
+     * @param name the prefix for platform thread names
+     * @return the executor
+     */
+
+    public static ExecutorService newPerTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return true if this JDK has virtual threads; false otherwise
+     */
+
+    public static boolean isAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.apcsa.session;
+
+import com.apcsa.model.User;
+
+public class Session {
+
+    private final String token;
+    private final User user;
+    private final long createdAt;
+    private volatile long lastAccess;
+
+    /**
+     * Creates an instance of the Session class.
+     *
+     * @param token the session's token
+     * @param user the logged-in user (an Administrator, Teacher, or Student where applicable)
+     * @param now the current time (from System.nanoTime)
+     */
+
+    Session(String token, User user, long now) {
+        this.token = token;
+        this.user = user;
+        this.createdAt = System.currentTimeMillis();
+        this.lastAccess = now;
+    }
+
+    /**
+     * @return the token that identifies this session
+     */
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the logged-in user, shared by every request in the session
+     */
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return when the session was opened (milliseconds since the epoch)
+     */
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /*
+     * Records activity.
+     */
+
+    void touch(long now) {
+        lastAccess = now;
+    }
+
+    /*
+     * @return the time of the last activity (from System.nanoTime)
+     */
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+}
@@ -0,0 +1,182 @@
+package com.apcsa.session;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.model.User;
+
+public class SessionManager {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final long idleTimeout;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+    private final TimerWheel<Session> wheel;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Creates an instance of the SessionManager class.
+     *
+     * @param idleTimeout how long (in milliseconds) a session may go unused before it is evicted
+     * @param tick how often (in milliseconds) idle sessions are evicted
+     */
+
+    public SessionManager(long idleTimeout, long tick) {
+        if (idleTimeout < 1 || tick < 1) {
+            throw new IllegalArgumentException("Timeout and tick must be positive.");
+        }
+
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.wheel = new TimerWheel<Session>(TimeUnit.MILLISECONDS.toNanos(tick),
+            (int) Math.min(4096, idleTimeout / tick + 1), System.nanoTime());
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-evictor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evict, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a session manager configured from system properties:
+     * powerschool.session.idleTimeout (default 30 minutes) and
+     * powerschool.session.tick (default 1 second), both in milliseconds.
+     *
+     * @return a session manager
+     */
+
+    public static SessionManager fromSystemProperties() {
+        return new SessionManager(Long.getLong("powerschool.session.idleTimeout", 30 * 60 * 1000L),
+            Long.getLong("powerschool.session.tick", 1000L));
+    }
+
+    /**
+     * Logs in and opens a session for the user. Administrators, teachers, and students
+     * are loaded once here; requests in the session share that object.
+     *
+     * @param username the username
+     * @param password the password
+     * @return the session, or null if the credentials were invalid
+     */
+
+    public Session login(String username, String password) {
+        User user = PowerSchool.login(username, password);
+
+        if (user == null) {
+            return null;
+        }
+
+        return open(user.isAdministrator() ? PowerSchool.getAdministrator(user)
+            : user.isTeacher() ? PowerSchool.getTeacher(user)
+            : user.isStudent() ? PowerSchool.getStudent(user)
+            : user);
+    }
+
+    /**
+     * Opens a session for a user who has already been authenticated (e.g., a load
+     * test driving many logical sessions).
+     *
+     * @param user the user
+     * @return the session
+     */
+
+    public Session open(User user) {
+        long now = System.nanoTime();
+        Session session = new Session(newToken(), user, now);
+
+        sessions.put(session.getToken(), session);
+        wheel.schedule(session, now + idleTimeout);
+
+        return session;
+    }
+
+    /**
+     * Looks up a session and records activity on it.
+     *
+     * @param token the session's token
+     * @return the session, or null if it does not exist, was logged out, or has expired
+     */
+
+    public Session get(String token) {
+        Session session = token == null ? null : sessions.get(token);
+
+        if (session == null) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+
+        if (now - session.getLastAccess() >= idleTimeout) {
+            sessions.remove(token, session);
+            return null;
+        }
+
+        session.touch(now);
+        return session;
+    }
+
+    /**
+     * Ends a session.
+     *
+     * @param token the session's token
+     */
+
+    public void logout(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * @return the number of open sessions
+     */
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops evicting idle sessions and ends every session.
+     */
+
+    public void shutdown() {
+        evictor.shutdownNow();
+        sessions.clear();
+    }
+
+    /*
+     * Evicts the sessions whose idle deadline has passed. A session that was used
+     * since it was scheduled is rescheduled for its new deadline instead, so requests
+     * only ever write a timestamp.
+     */
+
+    private void evict() {
+        long now = System.nanoTime();
+
+        wheel.advance(now, session -> {
+            long deadline = session.getLastAccess() + idleTimeout;
+
+            if (deadline - now <= 0) {
+                sessions.remove(session.getToken(), session);
+            } else if (sessions.get(session.getToken()) == session) {
+                wheel.schedule(session, deadline);
+            }
+        });
+    }
+
+    /*
+     * Generates an unguessable token.
+     */
+
+    private static String newToken() {
+        byte[] bytes = new byte[18];
+        RANDOM.nextBytes(bytes);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,115 @@
+package com.apcsa.session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/*
+ * A hashed timer wheel. Deadlines are rounded up to a tick and hashed into a fixed
+ * ring of slots, so scheduling is O(1) and each advance only visits the slots for
+ * the ticks that have passed. Items whose deadline is more than one revolution away
+ * stay in their slot until the right revolution comes round.
+ *
+ * @param <T> the scheduled item type
+ */
+
+public class TimerWheel<T> {
+
+    private final long tickNanos;
+    private final long origin;
+    private final ArrayList<ConcurrentLinkedQueue<Entry<T>>> slots;
+
+    private volatile long cursor;     // the next tick to process
+
+    /**
+     * Creates an instance of the TimerWheel class.
+     *
+     * @param tickNanos the length of a tick
+     * @param size the number of slots
+     * @param origin the time (from System.nanoTime) of tick 0
+     */
+
+    public TimerWheel(long tickNanos, int size, long origin) {
+        if (tickNanos < 1 || size < 1) {
+            throw new IllegalArgumentException("Tick length and size must be positive.");
+        }
+
+        this.tickNanos = tickNanos;
+        this.origin = origin;
+        this.slots = new ArrayList<ConcurrentLinkedQueue<Entry<T>>>(size);
+
+        for (int i = 0; i < size; i++) {
+            slots.add(new ConcurrentLinkedQueue<Entry<T>>());
+        }
+    }
+
+    /**
+     * Schedules an item. An item may be scheduled more than once; each schedule
+     * expires separately.
+     *
+     * @param item the item
+     * @param deadline when the item expires (from System.nanoTime)
+     */
+
+    public void schedule(T item, long deadline) {
+        long tick = Math.max(cursor, ticks(deadline) + 1);
+
+        slots.get((int) (tick % slots.size())).add(new Entry<T>(item, tick));
+    }
+
+    /**
+     * Expires every item whose deadline has passed.
+     *
+     * @param now the current time (from System.nanoTime)
+     * @param expired receives each expired item
+     */
+
+    public synchronized void advance(long now, Consumer<T> expired) {
+        long target = ticks(now);
+        long from = cursor;
+
+        if (target < from) {
+            return;
+        }
+
+        long visits = Math.min(target - from + 1, slots.size());
+
+        for (long tick = from; tick < from + visits; tick++) {
+            Iterator<Entry<T>> entries = slots.get((int) (tick % slots.size())).iterator();
+
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+
+                if (entry.tick <= target) {
+                    entries.remove();
+                    expired.accept(entry.item);
+                }
+            }
+        }
+        cursor = target + 1;
+    }
+
+    /*
+     * Converts a time to a tick number.
+     */
+
+    private long ticks(long time) {
+        return Math.max(0, time - origin) / tickNanos;
+    }
+
+    /*
+     * A scheduled item and the tick it expires on.
+     */
+
+    private static class Entry<T> {
+
+        private final T item;
+        private final long tick;
+
+        Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}